@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fortify.fprtosonarqube.benchmark.SyntheticFprGenerator;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.sink.IssueDataSink;
+import com.fortify.fprtosonarqube.util.FvdlSource;
+import com.fortify.fprtosonarqube.util.StreamingFvdlParser;
+
+/**
+ * Benchmark for mapping already parsed {@link FvdlVulnerability} instances to
+ * {@link SQIssue} instances through {@link FvdlParser#getSQIssue(FvdlVulnerability)}, 
+ * including node pool lookups. This lives in the same package as {@link FvdlParser}
+ * to be able to access that method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1) @Warmup(iterations=3) @Measurement(iterations=5)
+public class FvdlParserBenchmark {
+	private static final int VULNERABILITIES = 10000;
+	private final List<FvdlVulnerability> vulnerabilities = new ArrayList<>();
+	private FvdlSource source;
+	private FvdlParser parser;
+	private int index = 0;
+	
+	@Setup
+	public void setup() throws IOException, XMLStreamException {
+		Path fpr = SyntheticFprGenerator.getFpr(VULNERABILITIES);
+		Map<String, String> iidToFolderMap = new ReportParser().parse(SyntheticFprGenerator.getReportFile(fpr).toString());
+		source = new FvdlSource(fpr.toString());
+		parser = new FvdlParser(source);
+		// Initialize source base path and IID to folder map
+		parser.parse(new IssueDataSink() {
+			@Override public void issue(SQIssue issue) {}
+			@Override public void rule(SQRule rule) {}
+		}, iidToFolderMap);
+		new StreamingFvdlParser()
+			.handler("Vulnerabilities/Vulnerability", reader->{
+				FvdlVulnerability vuln = DomainReader.getDefault().readVulnerability(reader, iidToFolderMap::containsKey);
+				if ( vuln!=null ) { vulnerabilities.add(vuln); }
+			}).parseFpr(fpr.toString());
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		source.close();
+	}
+	
+	@Benchmark
+	public SQIssue getSQIssue() throws IOException, XMLStreamException {
+		return parser.getSQIssue(vulnerabilities.get(index++ % vulnerabilities.size()));
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Node;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.reader.JacksonDomainReader;
+import com.fortify.fprtosonarqube.reader.StaxDomainReader;
+import com.fortify.fprtosonarqube.util.StreamingFvdlParser;
+import com.fortify.util.xml.XmlStreamReaderHelper;
+
+/**
+ * Benchmarks for binding {@link FvdlVulnerability} and {@link Node} elements using 
+ * either {@link JacksonDomainReader} (through XmlMapperHelper) or {@link StaxDomainReader}.
+ * Elements are copied from a synthetic FPR file to in-memory fragments during setup;
+ * every benchmark invocation reads the next fragment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1) @Warmup(iterations=3) @Measurement(iterations=5)
+public class DomainReaderBenchmark {
+	private static final int MAX_FRAGMENTS = 10000;
+	@Param({"jackson", "stax"})
+	private String domainReaderType;
+	private DomainReader domainReader;
+	private final List<byte[]> vulnerabilities = new ArrayList<>();
+	private final List<byte[]> nodes = new ArrayList<>();
+	private int vulnerabilityIndex = 0;
+	private int nodeIndex = 0;
+	
+	@Setup
+	public void setup() throws IOException, XMLStreamException {
+		domainReader = "stax".equals(domainReaderType) ? StaxDomainReader.INSTANCE : JacksonDomainReader.INSTANCE;
+		Path fpr = SyntheticFprGenerator.getFpr(MAX_FRAGMENTS);
+		new StreamingFvdlParser()
+			.handler("Vulnerabilities/Vulnerability", reader->vulnerabilities.add(XmlStreamReaderHelper.copyElement(reader)))
+			.handler("UnifiedNodePool/Node", reader->nodes.add(XmlStreamReaderHelper.copyElement(reader)))
+			.parseFpr(fpr.toString());
+	}
+	
+	@Benchmark
+	public FvdlVulnerability readVulnerability() throws IOException, XMLStreamException {
+		byte[] fragment = vulnerabilities.get(vulnerabilityIndex++ % vulnerabilities.size());
+		return domainReader.readVulnerability(XmlStreamReaderHelper.createXmlStreamReader(fragment), iid->true);
+	}
+	
+	@Benchmark
+	public Node readNode() throws IOException, XMLStreamException {
+		byte[] fragment = nodes.get(nodeIndex++ % nodes.size());
+		return domainReader.readNode(XmlStreamReaderHelper.createXmlStreamReader(fragment));
+	}
+}
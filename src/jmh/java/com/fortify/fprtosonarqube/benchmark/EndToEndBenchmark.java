@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fortify.fprtosonarqube.FprToSonarQube;
+import com.fortify.fprtosonarqube.ReportParser;
+import com.fortify.fprtosonarqube.util.IidFolderMapCache;
+
+/**
+ * End-to-end conversion benchmark. To run offline, the report cache is populated 
+ * with the IID to folder map from the synthetic report during setup, so ReportGenerator
+ * is never invoked. The options parameter is a comma-separated list of system properties 
+ * to be set for the conversion, for example 'singlePass=true,workerThreads=4'. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1) @Warmup(iterations=3) @Measurement(iterations=5)
+public class EndToEndBenchmark {
+	@Param({"1000", "100000"})
+	private int vulnerabilities;
+	@Param({"", "singlePass=true", "extractFvdl=true,workerThreads=4"})
+	private String options;
+	private Path fpr;
+	private Path cacheDir;
+	
+	@Setup
+	public void setup() throws IOException, XMLStreamException {
+		fpr = SyntheticFprGenerator.getFpr(vulnerabilities);
+		cacheDir = Files.createTempDirectory("FprToSonarQubeBenchmark");
+		IidFolderMapCache cache = new IidFolderMapCache(cacheDir, Long.MAX_VALUE, false);
+		cache.put(cache.getKey(fpr.toString(), null), 
+				new ReportParser().parse(SyntheticFprGenerator.getReportFile(fpr).toString()));
+		System.setProperty("reportCacheDir", cacheDir.toString());
+		for ( String option : options.split(",") ) {
+			String[] keyValue = option.split("=", 2);
+			if ( keyValue.length==2 ) { System.setProperty(keyValue[0].trim(), keyValue[1].trim()); }
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(cacheDir.toFile());
+	}
+	
+	@Benchmark
+	public void convert() throws IOException, XMLStreamException, InterruptedException {
+		new FprToSonarQube(fpr.toString()).process(new NullOutputStream());
+	}
+}
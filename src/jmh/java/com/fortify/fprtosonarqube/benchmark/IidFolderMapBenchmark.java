@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fortify.fprtosonarqube.domain.report.ReportIssue;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.util.IidFolderMap;
+import com.fortify.util.xml.StreamingXmlParser;
+
+/**
+ * Benchmarks for building and querying the instance id to folder map, comparing 
+ * {@link IidFolderMap} (on-heap and off-heap) against a plain {@link HashMap}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1) @Warmup(iterations=3) @Measurement(iterations=5)
+public class IidFolderMapBenchmark {
+	@Param({"1000", "100000"})
+	private int vulnerabilities;
+	@Param({"IidFolderMap", "IidFolderMapOffHeap", "HashMap"})
+	private String mapType;
+	private final List<String> iids = new ArrayList<>();
+	private final List<String> folders = new ArrayList<>();
+	private Map<String, String> map;
+	private int index = 0;
+	
+	@Setup
+	public void setup() throws IOException, XMLStreamException {
+		new StreamingXmlParser()
+			.handler("ReportSection/SubSection/IssueListing/Chart/GroupingSection/Issue", reader->{
+				ReportIssue issue = DomainReader.getDefault().readReportIssue(reader);
+				iids.add(issue.getIid());
+				folders.add(issue.getFolder());
+			})
+			.parse(SyntheticFprGenerator.getReportFile(SyntheticFprGenerator.getFpr(vulnerabilities)).toString());
+		map = build();
+	}
+	
+	@Benchmark
+	public Map<String, String> build() {
+		Map<String, String> result = createMap();
+		for ( int i = 0 ; i < iids.size() ; i++ ) {
+			result.put(iids.get(i), folders.get(i));
+		}
+		return result;
+	}
+	
+	@Benchmark
+	public String get() {
+		return map.get(iids.get(index++ % iids.size()));
+	}
+	
+	private Map<String, String> createMap() {
+		switch (mapType) {
+		case "IidFolderMap": return new IidFolderMap(false);
+		case "IidFolderMapOffHeap": return new IidFolderMap(true);
+		default: return new HashMap<>();
+		}
+	}
+}
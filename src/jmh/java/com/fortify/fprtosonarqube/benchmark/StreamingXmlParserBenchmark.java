@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fortify.fprtosonarqube.util.StreamingFvdlParser;
+import com.fortify.util.xml.XmlStreamReaderHelper;
+
+/**
+ * Benchmarks for path dispatch in {@link com.fortify.util.xml.AbstractStreamingXmlParser}, 
+ * parsing an already extracted audit.fvdl file. The skipAll benchmark only matches a 
+ * single Build element, so all other sections are skipped as a whole; the dispatchAll 
+ * benchmark invokes a handler for every vulnerability, node and description.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1) @Warmup(iterations=3) @Measurement(iterations=5)
+public class StreamingXmlParserBenchmark {
+	@Param({"1000", "100000"})
+	private int vulnerabilities;
+	private Path fvdl;
+	
+	@Setup
+	public void setup() throws IOException {
+		fvdl = Files.createTempFile("benchmark", ".fvdl");
+		SyntheticFprGenerator.extractFvdl(SyntheticFprGenerator.getFpr(vulnerabilities), fvdl);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(fvdl);
+	}
+	
+	@Benchmark
+	public int skipAll() throws IOException, XMLStreamException {
+		int[] count = new int[1];
+		new StreamingFvdlParser()
+			.handler("Build/SourceBasePath", reader->{ count[0]++; reader.getElementText(); })
+			.parse(fvdl.toString());
+		return count[0];
+	}
+	
+	@Benchmark
+	public int dispatchAll() throws IOException, XMLStreamException {
+		int[] count = new int[1];
+		new StreamingFvdlParser()
+			.handler("Build/SourceBasePath", reader->{ count[0]++; reader.getElementText(); })
+			.handler("Vulnerabilities/Vulnerability", reader->{ count[0]++; XmlStreamReaderHelper.skipElement(reader); })
+			.handler("UnifiedNodePool/Node", reader->{ count[0]++; XmlStreamReaderHelper.skipElement(reader); })
+			.handler("Description", reader->{ count[0]++; XmlStreamReaderHelper.skipElement(reader); })
+			.parse(fvdl.toString());
+		return count[0];
+	}
+}
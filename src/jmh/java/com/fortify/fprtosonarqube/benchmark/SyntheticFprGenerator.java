@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deterministic generator for synthetic FPR files, used by the benchmarks to run 
+ * fully offline. For a given number of vulnerabilities and seed, this generates an 
+ * FPR file containing audit.fvdl and audit.xml, together with a '.report.xml' file 
+ * next to it containing the corresponding ReportGenerator output. FVDL contents are 
+ * streamed to the FPR file, so FPR files with millions of vulnerabilities can be
+ * generated without holding them in memory.
+ */
+public class SyntheticFprGenerator {
+	private static final String[] FOLDERS = {"Critical", "High", "Medium", "Low"};
+	private static final int CLASSES = 20;
+	private static final int SOURCE_FILES = 500;
+	private final int vulnerabilities;
+	private final int nodes;
+	private final long seed;
+	
+	public SyntheticFprGenerator(int vulnerabilities, long seed) {
+		this.vulnerabilities = vulnerabilities;
+		this.nodes = Math.min(Math.max(vulnerabilities/5, 100), 100000);
+		this.seed = seed;
+	}
+	
+	/**
+	 * Get a synthetic FPR file with the given number of vulnerabilities, generating 
+	 * it in the given directory if it doesn't exist yet.
+	 */
+	public static Path getFpr(Path dir, int vulnerabilities) throws IOException {
+		Path fpr = dir.resolve("synthetic-"+vulnerabilities+".fpr");
+		if ( !Files.exists(fpr) || !Files.exists(getReportFile(fpr)) ) {
+			Files.createDirectories(dir);
+			new SyntheticFprGenerator(vulnerabilities, 1).generate(fpr);
+		}
+		return fpr;
+	}
+	
+	/**
+	 * Get a synthetic FPR file with the given number of vulnerabilities from
+	 * the FprToSonarQubeBenchmark directory in the system temp directory.
+	 */
+	public static Path getFpr(int vulnerabilities) throws IOException {
+		return getFpr(Paths.get(System.getProperty("java.io.tmpdir"), "FprToSonarQubeBenchmark"), vulnerabilities);
+	}
+	
+	/**
+	 * Get the file containing the ReportGenerator output for the given FPR file
+	 */
+	public static Path getReportFile(Path fpr) {
+		return fpr.resolveSibling(fpr.getFileName()+".report.xml");
+	}
+	
+	/**
+	 * Extract audit.fvdl from the given FPR file to the given target file
+	 */
+	public static void extractFvdl(Path fpr, Path target) throws IOException {
+		try ( ZipFile zipFile = new ZipFile(fpr.toFile()); 
+			  InputStream inputStream = zipFile.getInputStream(zipFile.getEntry("audit.fvdl")) ) {
+			Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Generate the FPR file and corresponding report file. Both files are written
+	 * to temporary files first, so interrupted runs don't leave incomplete files.
+	 */
+	public void generate(Path fpr) throws IOException {
+		Path report = getReportFile(fpr);
+		Path tmpFpr = Files.createTempFile(fpr.toAbsolutePath().getParent(), "synthetic", ".tmp");
+		Path tmpReport = Files.createTempFile(fpr.toAbsolutePath().getParent(), "synthetic", ".tmp");
+		try {
+			try ( ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmpFpr));
+				  Writer fvdl = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64*1024);
+				  Writer reportWriter = Files.newBufferedWriter(tmpReport, StandardCharsets.UTF_8) ) {
+				zip.putNextEntry(new ZipEntry("audit.fvdl"));
+				writeFvdl(fvdl, reportWriter);
+				fvdl.flush();
+				zip.putNextEntry(new ZipEntry("audit.xml"));
+				fvdl.write("<?xml version=\"1.0\"?><ns2:Audit xmlns:ns2=\"xmlns://www.fortify.com/schema/audit\"><ns2:IssueList/></ns2:Audit>");
+				fvdl.flush();
+				zip.closeEntry();
+			}
+			Files.move(tmpReport, report, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmpFpr, fpr, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmpFpr);
+			Files.deleteIfExists(tmpReport);
+		}
+	}
+
+	private void writeFvdl(Writer fvdl, Writer report) throws IOException {
+		Random random = new Random(seed);
+		fvdl.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<FVDL xmlns=\"xmlns://www.fortifysoftware.com/schema/fvdl\" version=\"1.12\">");
+		fvdl.write("<CreatedTS date=\"2020-01-01\" time=\"00:00:00\"/><UUID>synthetic</UUID><Build><Project>synthetic</Project>");
+		fvdl.write("<SourceBasePath>/synthetic</SourceBasePath><ScanTime value=\"1\"/></Build><Vulnerabilities>");
+		report.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<ReportDefinition type=\"xml\"><TemplateName>Issues</TemplateName>");
+		report.write("<ReportSection><Title>t</Title><SubSection><Title>s</Title><IssueListing><Chart chartType=\"list\"><GroupingSection>");
+		for ( int i = 0 ; i < vulnerabilities ; i++ ) {
+			String iid = String.format("%016X%016X", random.nextLong(), random.nextLong());
+			writeVulnerability(fvdl, random, iid, random.nextInt(CLASSES));
+			// Like a filter set, the report doesn't contain all issues 
+			if ( random.nextInt(10)<7 ) {
+				report.write("<Issue iid=\""+iid+"\" ruleID=\"r\"><Category>c</Category><Folder>"+FOLDERS[random.nextInt(FOLDERS.length)]
+						+"</Folder><Kingdom>k</Kingdom><Abstract>a</Abstract><Friority>f</Friority></Issue>");
+			}
+		}
+		report.write("</GroupingSection></Chart></IssueListing></SubSection></ReportSection></ReportDefinition>");
+		fvdl.write("</Vulnerabilities><ContextPool><Context id=\"1\"><Function name=\"f\"/></Context></ContextPool><UnifiedNodePool>");
+		for ( int i = 0 ; i < nodes ; i++ ) {
+			int line = 1+random.nextInt(500);
+			fvdl.write("<Node id=\""+i+"\"><SourceLocation path=\"src/pool/File"+random.nextInt(SOURCE_FILES)+".java\" line=\""+line
+					+"\" lineEnd=\""+(line+random.nextInt(3))+"\" colStart=\""+random.nextInt(5)+"\" colEnd=\"0\" contextId=\"1\"/>"
+					+"<Action type=\"Assign\">x</Action><Knowledge/></Node>");
+		}
+		fvdl.write("</UnifiedNodePool>");
+		for ( int i = 0 ; i < CLASSES ; i++ ) {
+			fvdl.write("<Description contentType=\"preformatted\" classID=\""+getClassId(i)+"\"><Abstract>Abstract &lt;Content&gt;"+i
+					+"&lt;/Content&gt;</Abstract><Explanation>&lt;Content&gt;Explanation "+i+" &amp; more&lt;/Content&gt;</Explanation>"
+					+"<Recommendations>Recommendations "+i+"</Recommendations></Description>");
+		}
+		fvdl.write("<Snippets/><ProgramData/><EngineData><EngineVersion>20.1</EngineVersion><RulePacks><RulePack><RulePackID>synthetic</RulePackID>"
+				+"<Name>Synthetic</Name><Version>"+seed+"</Version></RulePack></RulePacks><RuleInfo>");
+		for ( int i = 0 ; i < CLASSES ; i++ ) {
+			fvdl.write("<Rule id=\""+getClassId(i)+"\"><MetaInfo><Group name=\"Accuracy\">"+getMetaValue(random)
+					+"</Group><Group name=\"Impact\">"+getMetaValue(random)+"</Group><Group name=\"Probability\">"+getMetaValue(random)
+					+"</Group></MetaInfo></Rule>");
+		}
+		fvdl.write("</RuleInfo></EngineData></FVDL>");
+	}
+	
+	private void writeVulnerability(Writer fvdl, Random random, String iid, int classIndex) throws IOException {
+		fvdl.write("<Vulnerability><ClassInfo><ClassID>"+getClassId(classIndex)+"</ClassID><Kingdom>K</Kingdom><Type>Type "+classIndex+"</Type>");
+		if ( classIndex%3!=0 ) { fvdl.write("<Subtype>Subtype "+classIndex+"</Subtype>"); }
+		fvdl.write("<AnalyzerName>dataflow</AnalyzerName><DefaultSeverity>"+(1+random.nextInt(5))+".0</DefaultSeverity></ClassInfo>");
+		fvdl.write("<InstanceInfo><InstanceID>"+iid+"</InstanceID><InstanceSeverity>"+getMetaValue(random)
+				+"</InstanceSeverity><Confidence>"+getMetaValue(random)+"</Confidence></InstanceInfo>");
+		fvdl.write("<AnalysisInfo><Unified><Context><Function name=\"f\" namespace=\"n\" enclosingClass=\"c\"/></Context><Trace><Primary>");
+		int entries = 1+random.nextInt(6);
+		int defaultEntry = random.nextInt(entries);
+		for ( int i = 0 ; i < entries ; i++ ) {
+			if ( random.nextBoolean() ) {
+				fvdl.write("<Entry><NodeRef id=\""+random.nextInt(nodes)+"\"/></Entry>");
+			} else {
+				int line = 1+random.nextInt(500);
+				fvdl.write("<Entry><Node"+(i==defaultEntry ? " isDefault=\"true\"" : "")+" label=\"x\"><SourceLocation path=\"src/File"
+						+random.nextInt(SOURCE_FILES)+".java\" line=\""+line+"\" lineEnd=\""+(line+random.nextInt(4))+"\" colStart=\""
+						+random.nextInt(10)+"\" colEnd=\""+random.nextInt(40)+"\" contextId=\"1\"/><Action type=\"InCall\">f()</Action>"
+						+"<Knowledge><Fact primary=\"false\" type=\"Call\">x</Fact></Knowledge></Node></Entry>");
+			}
+		}
+		fvdl.write("</Primary></Trace></Unified></AnalysisInfo></Vulnerability>");
+	}
+	
+	private static String getClassId(int classIndex) {
+		return String.format("SYNTHETIC-%04d", classIndex);
+	}
+	
+	private static String getMetaValue(Random random) {
+		return String.format(Locale.ROOT, "%.1f", random.nextDouble()*5);
+	}
+	
+	/**
+	 * Generate a synthetic FPR file; usage: SyntheticFprGenerator &lt;vulnerabilities&gt; &lt;fpr file&gt; [seed]
+	 */
+	public static void main(String[] args) throws IOException {
+		if ( args.length<2 ) {
+			System.err.println("Usage: SyntheticFprGenerator <vulnerabilities> <fpr file> [seed]");
+			System.exit(1);
+		}
+		new SyntheticFprGenerator(Integer.parseInt(args[0]), args.length>2 ? Long.parseLong(args[2]) : 1).generate(Paths.get(args[1]));
+	}
+}
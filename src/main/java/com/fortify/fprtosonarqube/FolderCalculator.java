@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.util.FvdlScratchFile.Section;
+import com.fortify.fprtosonarqube.util.FvdlSource;
+import com.fortify.fprtosonarqube.util.IidFolderMap;
+import com.fortify.fprtosonarqube.util.StreamingFvdlParser;
+import com.fortify.util.xml.StreamingXmlParser;
+import com.fortify.util.xml.XmlStreamReaderHelper;
+
+/**
+ * This class calculates the IID to folder map in-process, as an alternative to 
+ * generating and parsing an issue report using Fortify ReportGenerator. Folders
+ * are assigned based on the default Fortify priority order:
+ * <ul>
+ *  <li>Impact is taken from the rule metadata in EngineData/RuleInfo, falling back
+ *      to ClassInfo/DefaultSeverity and InstanceInfo/InstanceSeverity</li>
+ *  <li>Likelihood is calculated as Accuracy * Confidence * Probability / 25, falling 
+ *      back to InstanceInfo/Confidence if the rule doesn't define Accuracy and Probability</li>
+ *  <li>Critical: impact &gt;= 2.5 and likelihood &gt;= 2.5; High: impact &gt;= 2.5; 
+ *      Medium: likelihood &gt;= 2.5; Low: everything else</li>
+ * </ul>
+ * Issues that are marked as suppressed in audit.xml are not included in the map.
+ * Filter templates are not evaluated; {@link #getUnsupportedFilterTemplateFeature()}
+ * determines whether the filter template embedded in the FPR file would assign
+ * different folders than this class.
+ */
+public class FolderCalculator {
+	private static final float THRESHOLD = 2.5f;
+	private static final Set<String> DEFAULT_FOLDERS = new HashSet<>(Arrays.asList("Critical", "High", "Medium", "Low"));
+	private final FvdlSource source;
+	private final DomainReader domainReader = DomainReader.getDefault();
+	
+	public FolderCalculator(FvdlSource source) {
+		this.source = source;
+	}
+	
+	public Map<String,String> calculate() throws IOException, XMLStreamException {
+		Set<String> suppressedInstanceIds = getSuppressedInstanceIds();
+		boolean offHeap = Boolean.getBoolean("iidMapOffHeap");
+		if ( source.getScratchFile()!=null ) {
+			// EngineData can be read directly from the scratch file, so we can
+			// calculate folders while streaming the vulnerabilities.
+			Map<String, RuleMetaInfo> ruleMetaInfos = new HashMap<>();
+			source.parse(new StreamingFvdlParser()
+				.handler("EngineData/RuleInfo/Rule", reader->readRuleMetaInfo(reader, ruleMetaInfos)), 
+				Section.ENGINE_DATA, Section.ENGINE_DATA);
+			Map<String,String> iidToFolderMap = new IidFolderMap(offHeap);
+			source.parse(new StreamingFvdlParser()
+				.handler("Vulnerabilities/Vulnerability", reader->{
+					FvdlVulnerability vuln = domainReader.readVulnerabilityInfo(reader);
+					if ( !suppressedInstanceIds.contains(vuln.getInstanceInfo().getInstanceID()) ) {
+						VulnerabilityInfo info = new VulnerabilityInfo(vuln, vuln.getClassInfo().getClassID());
+						iidToFolderMap.put(info.instanceId, getFolder(info, ruleMetaInfos));
+					}
+				}), Section.VULNERABILITIES, Section.VULNERABILITIES);
+			return iidToFolderMap;
+		}
+		// Vulnerabilities precede EngineData, so we collect compact vulnerability
+		// info records and calculate folders once the rule metadata is available.
+		List<VulnerabilityInfo> vulnerabilities = new ArrayList<>();
+		Map<String, String> classIds = new HashMap<>();
+		Map<String, RuleMetaInfo> ruleMetaInfos = new HashMap<>();
+		source.parse(new StreamingFvdlParser()
+			.handler("Vulnerabilities/Vulnerability", reader->{
+				FvdlVulnerability vuln = domainReader.readVulnerabilityInfo(reader);
+				if ( !suppressedInstanceIds.contains(vuln.getInstanceInfo().getInstanceID()) ) {
+					String classId = vuln.getClassInfo().getClassID();
+					vulnerabilities.add(new VulnerabilityInfo(vuln, classId==null ? null : classIds.computeIfAbsent(classId, k->k)));
+				}
+			})
+			.handler("EngineData/RuleInfo/Rule", reader->readRuleMetaInfo(reader, ruleMetaInfos)), 
+			Section.VULNERABILITIES, Section.ENGINE_DATA);
+		
+		Map<String,String> iidToFolderMap = new IidFolderMap(offHeap, vulnerabilities.size());
+		for ( VulnerabilityInfo info : vulnerabilities ) {
+			iidToFolderMap.put(info.instanceId, getFolder(info, ruleMetaInfos));
+		}
+		return iidToFolderMap;
+	}
+	
+	/**
+	 * Check the filter template embedded in the FPR file (filtertemplate.xml), if any. Folders
+	 * calculated by this class only match those assigned by ReportGenerator if the enabled filter
+	 * set doesn't hide any issues, and only assigns issues to the default Critical, High, Medium
+	 * and Low folders based on the Fortify priority order. This method returns a description of
+	 * the first filter template feature that doesn't match these conditions, or null if the FPR
+	 * file doesn't contain a filter template or the template matches these conditions.
+	 */
+	public String getUnsupportedFilterTemplateFeature() throws IOException, XMLStreamException {
+		Map<String, String> folderNames = new HashMap<>();
+		List<String> enabledFilterSets = new ArrayList<>();
+		List<String[]> filters = new ArrayList<>();
+		boolean hasTemplate = source.parseEntry(new StreamingXmlParser()
+			.handler("FolderDefinition", reader->{
+				String id = reader.getAttributeValue(null, "id");
+				folderNames.put(id, readElementTexts(reader, "name").get("name"));
+			})
+			.handler("FilterSet", reader->{
+				if ( !"true".equals(reader.getAttributeValue(null, "enabled")) ) {
+					XmlStreamReaderHelper.skipElement(reader);
+					return;
+				}
+				enabledFilterSets.add(reader.getAttributeValue(null, "id"));
+				while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+					if ( "Filter".equals(reader.getLocalName()) ) {
+						Map<String, String> elements = readElementTexts(reader, "action", "actionParam", "query");
+						filters.add(new String[] {elements.get("action"), elements.get("actionParam"), elements.get("query")});
+					} else {
+						XmlStreamReaderHelper.skipElement(reader);
+					}
+				}
+			}), "filtertemplate.xml");
+		if ( !hasTemplate ) { return null; }
+		if ( enabledFilterSets.size()!=1 ) {
+			return enabledFilterSets.size()+" enabled filter sets";
+		}
+		for ( String[] filter : filters ) {
+			String action = filter[0], folder = folderNames.get(filter[1]), query = filter[2];
+			if ( !"setFolder".equals(action) ) {
+				return "filter action "+action+" for query "+query;
+			}
+			if ( folder==null || !DEFAULT_FOLDERS.contains(folder) 
+					|| query==null || !query.trim().equalsIgnoreCase("[fortify priority order]:"+folder) ) {
+				return "filter setting folder "+(folder==null ? filter[1] : folder)+" for query "+query;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Read the text contents of the child elements with the given names 
+	 * of the current element, skipping any other child elements
+	 */
+	private static Map<String, String> readElementTexts(XMLStreamReader reader, String... names) throws XMLStreamException {
+		List<String> nameList = Arrays.asList(names);
+		Map<String, String> result = new HashMap<>();
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( nameList.contains(reader.getLocalName()) ) {
+				result.put(reader.getLocalName(), reader.getElementText());
+			} else {
+				XmlStreamReaderHelper.skipElement(reader);
+			}
+		}
+		return result;
+	}
+	
+	private Set<String> getSuppressedInstanceIds() throws IOException, XMLStreamException {
+		Set<String> result = new HashSet<>();
+		source.parseEntry(new StreamingXmlParser()
+			.handler("IssueList/Issue", reader->{
+				if ( "true".equals(reader.getAttributeValue(null, "suppressed")) ) {
+					result.add(reader.getAttributeValue(null, "instanceId"));
+				}
+				XmlStreamReaderHelper.skipElement(reader);
+			}), "audit.xml");
+		return result;
+	}
+	
+	private static void readRuleMetaInfo(XMLStreamReader reader, Map<String, RuleMetaInfo> ruleMetaInfos) throws XMLStreamException {
+		String ruleId = reader.getAttributeValue(null, "id");
+		RuleMetaInfo result = new RuleMetaInfo();
+		ruleMetaInfos.put(ruleId, result);
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "MetaInfo".equals(reader.getLocalName()) ) {
+				while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+					if ( "Group".equals(reader.getLocalName()) ) {
+						String name = reader.getAttributeValue(null, "name");
+						switch ( name==null ? "" : name ) {
+						case "Accuracy": result.accuracy = XmlStreamReaderHelper.readFloat(reader); break;
+						case "Impact": result.impact = XmlStreamReaderHelper.readFloat(reader); break;
+						case "Probability": result.probability = XmlStreamReaderHelper.readFloat(reader); break;
+						default: XmlStreamReaderHelper.skipElement(reader);
+						}
+					} else {
+						XmlStreamReaderHelper.skipElement(reader);
+					}
+				}
+			} else {
+				XmlStreamReaderHelper.skipElement(reader);
+			}
+		}
+	}
+	
+	private static String getFolder(VulnerabilityInfo info, Map<String, RuleMetaInfo> ruleMetaInfos) {
+		RuleMetaInfo ruleMetaInfo = ruleMetaInfos.getOrDefault(info.classId, RuleMetaInfo.EMPTY);
+		boolean highImpact = getImpact(info, ruleMetaInfo) >= THRESHOLD;
+		boolean highLikelihood = getLikelihood(info, ruleMetaInfo) >= THRESHOLD;
+		if ( highImpact ) {
+			return highLikelihood ? "Critical" : "High";
+		}
+		return highLikelihood ? "Medium" : "Low";
+	}
+	
+	private static float getImpact(VulnerabilityInfo info, RuleMetaInfo ruleMetaInfo) {
+		return ruleMetaInfo.impact!=null ? ruleMetaInfo.impact : info.severity;
+	}
+	
+	private static float getLikelihood(VulnerabilityInfo info, RuleMetaInfo ruleMetaInfo) {
+		Float confidence = info.confidence;
+		if ( confidence==null ) { return 0; }
+		if ( ruleMetaInfo.accuracy==null || ruleMetaInfo.probability==null ) { return confidence; }
+		return ruleMetaInfo.accuracy * confidence * ruleMetaInfo.probability / 25;
+	}
+	
+	/**
+	 * Compact record holding only the vulnerability data needed for calculating 
+	 * the folder; severity is the default severity, falling back to the instance 
+	 * severity, or 0 if neither is available.
+	 */
+	private static final class VulnerabilityInfo {
+		private final String instanceId;
+		private final String classId;
+		private final float severity;
+		private final Float confidence;
+		
+		private VulnerabilityInfo(FvdlVulnerability vuln, String classId) {
+			Float defaultSeverity = vuln.getClassInfo().getDefaultSeverity();
+			Float instanceSeverity = vuln.getInstanceInfo().getInstanceSeverity();
+			this.instanceId = vuln.getInstanceInfo().getInstanceID();
+			this.classId = classId;
+			this.severity = defaultSeverity!=null ? defaultSeverity : instanceSeverity!=null ? instanceSeverity : 0;
+			this.confidence = vuln.getInstanceInfo().getConfidence();
+		}
+	}
+	
+	private static final class RuleMetaInfo {
+		private static final RuleMetaInfo EMPTY = new RuleMetaInfo();
+		private Float accuracy;
+		private Float impact;
+		private Float probability;
+	}
+}
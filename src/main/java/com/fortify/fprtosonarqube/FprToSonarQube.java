@@ -26,52 +26,500 @@ package com.fortify.fprtosonarqube;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.stream.XMLStreamException;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-
-import com.fasterxml.jackson.core.JsonEncoding;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+import com.fortify.fprtosonarqube.sink.AbstractJsonIssueDataSink;
+import com.fortify.fprtosonarqube.sink.CompositeIssueDataSink;
+import com.fortify.fprtosonarqube.sink.DiffIssueDataSink;
+import com.fortify.fprtosonarqube.sink.IssueDataSink;
+import com.fortify.fprtosonarqube.sink.OutputFormat;
+import com.fortify.fprtosonarqube.sink.ShardMap;
+import com.fortify.fprtosonarqube.sink.ShardedIssueDataSink;
+import com.fortify.fprtosonarqube.sink.SortingIssueDataSink;
+import com.fortify.fprtosonarqube.util.FvdlSource;
+import com.fortify.fprtosonarqube.util.IidFolderMapCache;
+import com.fortify.fprtosonarqube.util.IssueSnapshot;
+import com.fortify.fprtosonarqube.util.RunMetrics;
+import com.fortify.fprtosonarqube.util.RunMetrics.Counter;
+import com.fortify.fprtosonarqube.util.RunMetrics.Phase;
+import com.fortify.util.concurrent.ProducerStream;
 
 public class FprToSonarQube {
+	private static final boolean COMPACT_OUTPUT = Boolean.getBoolean("compactOutput");
+	private static final int STREAM_CAPACITY = 1024;
+	/** Parent logger for all loggers in this project; referenced here to retain its configuration */
+	private static final Logger LOGGER = Logger.getLogger("com.fortify");
+	private static final Logger LOG = Logger.getLogger(FprToSonarQube.class.getName());
 	private final String fprFileName;
 	private final String outputFileName;
+	private volatile RunMetrics metrics = null;
 	
 	public FprToSonarQube(String fprFileName, String outputFileName) {
 		this.fprFileName = fprFileName;
 		this.outputFileName = outputFileName;
 	}
 	
+	public FprToSonarQube(String fprFileName) {
+		this(fprFileName, null);
+	}
+	
+	/**
+	 * Convert the FPR file, writing the output formats specified by the outputFormats
+	 * system property (comma-separated list of sonarqube (default), ndjson and sarif) 
+	 * from a single conversion. Output is compact if the compactOutput system property
+	 * is set to true, and gzip-compressed if the gzipOutput system property is set to true.
+	 * If the runReport system property is set to true, a JSON run report containing the 
+	 * {@link RunMetrics} for this conversion is written to a .metrics.json file. If the 
+	 * shardMap system property is set, output is split into shards as described by 
+	 * {@link #processSharded(Path)}.
+	 */
 	private void process() throws FileNotFoundException, IOException, XMLStreamException, InterruptedException {
-		String reportFileName = ReportGenerator.generateIssueReport(fprFileName);
-		try (JsonGenerator generator = new JsonFactory().createGenerator(
-                        new File(outputFileName)
-                        , JsonEncoding.UTF8);
-			 DB db = DBMaker.tempFileDB()
-						.closeOnJvmShutdown().fileDeleteAfterClose()
-						.fileMmapEnableIfSupported()
-						.make()) {
-			generator.setCodec(new ObjectMapper());
-			generator.setPrettyPrinter(new DefaultPrettyPrinter());
-			generator.writeStartObject();
-			Map<String, String> iidToFolderMap = new ReportParser(reportFileName, db).parse(generator);
-			new FvdlParser(fprFileName, iidToFolderMap).parse(generator);
-			generator.writeEndObject();
+		String shardMap = System.getProperty("shardMap");
+		if ( shardMap!=null ) {
+			processSharded(Paths.get(shardMap));
+		} else {
+			try (CompositeIssueDataSink sink = createSink("", new ArrayList<>())) {
+				processSorted(sink);
+			}
+		}
+		if ( Boolean.getBoolean("runReport") ) {
+			metrics.writeReport(Paths.get(getDerivedFileName(".metrics.json")));
+		}
+	}
+	
+	/**
+	 * Convert the FPR file, routing issues to shards based on the {@link ShardMap} loaded 
+	 * from the given file. Output files for each shard are written concurrently, and 
+	 * named after the shard, for example &lt;name&gt;.&lt;shard&gt;.json. A .shards.json
+	 * manifest lists the number of issues and rules, and the output files for each shard.
+	 */
+	private void processSharded(Path shardMapFile) throws IOException, XMLStreamException, InterruptedException {
+		Map<String, List<String>> shardFiles = new LinkedHashMap<>();
+		List<Map<String, Object>> manifest;
+		try (ShardedIssueDataSink sink = new ShardedIssueDataSink(ShardMap.load(shardMapFile), 
+				shardName->createSink("."+shardName, shardFiles.computeIfAbsent(shardName, k->new ArrayList<>())))) {
+			processSorted(sink);
+			manifest = sink.getManifest();
+		}
+		for ( Map<String, Object> entry : manifest ) {
+			entry.put("files", shardFiles.get(entry.get("shard")));
+		}
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+			.writeValue(new File(getDerivedFileName(".shards.json")), Collections.singletonMap("shards", manifest));
+	}
+	
+	/**
+	 * Convert the FPR file as described by {@link #processWithSnapshot(IssueDataSink)}. If 
+	 * the sortedOutput system property is set to true, issues are passed to the given 
+	 * {@link IssueDataSink} through a {@link SortingIssueDataSink}, buffering at most 
+	 * sortMemoryBudget MB (default 64) of issue data on the heap.
+	 */
+	private void processSorted(IssueDataSink sink) throws IOException, XMLStreamException, InterruptedException {
+		if ( !Boolean.getBoolean("sortedOutput") ) {
+			processWithSnapshot(sink);
+		} else {
+			try (SortingIssueDataSink sortingSink = new SortingIssueDataSink(sink, Long.getLong("sortMemoryBudget", 64)*1024*1024)) {
+				processWithSnapshot(sortingSink);
+			}
+		}
+	}
+	
+	/**
+	 * Convert the FPR file, passing all issues and rules to the given {@link IssueDataSink}, 
+	 * or only new and changed issues if the snapshotFile or previousSnapshot system property
+	 * is set, as described by {@link #processIncremental(IssueDataSink, String, Path)}. 
+	 */
+	private void processWithSnapshot(IssueDataSink sink) throws IOException, XMLStreamException, InterruptedException {
+		String previousSnapshot = System.getProperty("previousSnapshot");
+		String snapshotFile = System.getProperty("snapshotFile");
+		if ( previousSnapshot==null && snapshotFile==null ) {
+			process(sink);
+		} else {
+			processIncremental(sink, previousSnapshot, 
+					Paths.get(snapshotFile!=null ? snapshotFile : getDerivedFileName(".snapshot")));
+		}
+	}
+	
+	/**
+	 * Create a sink for all output formats specified by the outputFormats system property
+	 * (comma-separated list of sonarqube (default), ndjson and sarif), with output file names 
+	 * derived from the output file name and the given suffix. The names of all output files 
+	 * are added to the given list.
+	 */
+	private CompositeIssueDataSink createSink(String suffix, List<String> fileNames) throws IOException {
+		List<AbstractJsonIssueDataSink> sinks = new ArrayList<>();
+		CompositeIssueDataSink result = new CompositeIssueDataSink(sinks);
+		try {
+			for ( String format : System.getProperty("outputFormats", "sonarqube").split(",") ) {
+				OutputFormat outputFormat = OutputFormat.valueOf(format.trim().toUpperCase());
+				String fileName = getDerivedFileName(suffix+outputFormat.getExtension());
+				if ( Boolean.getBoolean("gzipOutput") ) { fileName += ".gz"; }
+				sinks.add(outputFormat.createSink(createOutputStream(fileName), COMPACT_OUTPUT));
+				fileNames.add(fileName);
+			}
+		} catch ( IOException | RuntimeException e ) {
+			result.close();
+			throw e;
+		}
+		return result;
+	}
+	
+	/**
+	 * Convert the FPR file, writing an {@link IssueSnapshot} of all issues to the given 
+	 * snapshot file. If a previous snapshot file or FPR file is given, only issues that 
+	 * were added or changed compared to the previous snapshot are passed to the given 
+	 * {@link IssueDataSink}, and the instance id's of all removed issues are written to 
+	 * a separate .removed.txt file.
+	 */
+	private void processIncremental(IssueDataSink sink, String previousSnapshot, Path snapshotFile) throws IOException, XMLStreamException, InterruptedException {
+		IssueSnapshot.Builder currentBuilder = new IssueSnapshot.Builder();
+		Path currentFile = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), "snapshot", ".tmp");
+		Path previousFprSnapshotFile = previousSnapshot!=null && previousSnapshot.endsWith(".fpr") 
+				? Files.createTempFile("FortifySnapshot", ".snapshot") : null;
+		try {
+			try (IssueSnapshot previous = previousSnapshot==null ? null : openSnapshot(previousSnapshot, previousFprSnapshotFile)) {
+				process(new DiffIssueDataSink(sink, previous, currentBuilder));
+				currentBuilder.write(currentFile);
+				if ( previous!=null ) {
+					try (IssueSnapshot current = new IssueSnapshot(currentFile);
+						 Writer removed = Files.newBufferedWriter(Paths.get(getDerivedFileName(".removed.txt")))) {
+						previous.findRemoved(current, iid->removed.write(iid+"\n"));
+					}
+				}
+			}
+			Files.move(currentFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(currentFile);
+			if ( previousFprSnapshotFile!=null ) { Files.deleteIfExists(previousFprSnapshotFile); }
+		}
+	}
+	
+	/**
+	 * Open the given snapshot file or, if the given file name refers to an FPR file, 
+	 * create a snapshot for that FPR file in the given temporary file and open it.
+	 */
+	private static IssueSnapshot openSnapshot(String fileName, Path fprSnapshotFile) throws IOException, XMLStreamException, InterruptedException {
+		if ( !fileName.endsWith(".fpr") ) {
+			return new IssueSnapshot(Paths.get(fileName));
+		}
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		new FprToSonarQube(fileName).process(new DiffIssueDataSink(new IssueDataSink() {
+			@Override public void issue(SQIssue issue) {}
+			@Override public void rule(SQRule rule) {}
+		}, null, builder));
+		builder.write(fprSnapshotFile);
+		return new IssueSnapshot(fprSnapshotFile);
+	}
+	
+	private OutputStream createOutputStream(String fileName) throws IOException {
+		if ( fileName.endsWith(".gz") ) {
+			return new GZIPOutputStream(new FileOutputStream(fileName), 64*1024);
+		}
+		return new FileOutputStream(fileName);
+	}
+	
+	/**
+	 * Get the name of an output file with the given extension, derived from the output file name
+	 */
+	private String getDerivedFileName(String extension) {
+		return outputFileName.replaceAll("\\.json$", "")+extension;
+	}
+	
+	/**
+	 * Convert the FPR file, writing the SonarQube generic issue data to the given 
+	 * {@link OutputStream}. The output stream will be closed when done. 
+	 */
+	public void process(OutputStream outputStream) throws IOException, XMLStreamException, InterruptedException {
+		try (AbstractJsonIssueDataSink sink = OutputFormat.SONARQUBE.createSink(outputStream, COMPACT_OUTPUT)) {
+			process(sink);
+		}
+	}
+	
+	/**
+	 * Convert the FPR file, passing all issues and rules to the given {@link IssueDataSink}
+	 */
+	public void process(IssueDataSink sink) throws IOException, XMLStreamException, InterruptedException {
+		RunMetrics metrics = new RunMetrics(fprFileName);
+		this.metrics = metrics;
+		try (FvdlSource source = new FvdlSource(fprFileName, metrics)) {
+			FvdlParser fvdlParser = new FvdlParser(source);
+			Map<String, String> iidToFolderMap;
+			Phase iidToFolderMapPhase = metrics.startPhase("iidToFolderMap");
+			try {
+				iidToFolderMap = getIidToFolderMap(source, fvdlParser);
+			} finally {
+				iidToFolderMapPhase.close();
+			}
+			metrics.add(Counter.IID_MAP_SIZE, iidToFolderMap.size());
+			fvdlParser.parse(sink, iidToFolderMap);
+		} finally {
+			metrics.finish();
+		}
+	}
+	
+	/**
+	 * Get the {@link RunMetrics} for the most recent conversion run by this 
+	 * instance, or null if no conversion has been started yet.
+	 */
+	public RunMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Get a lazy {@link Stream} of all issues for the FPR file. Conversion is run on 
+	 * a background thread once the stream is consumed, at most {@value #STREAM_CAPACITY}
+	 * issues ahead of the consumer. Closing the stream cancels the conversion.
+	 */
+	public Stream<SQIssue> streamIssues() {
+		return ProducerStream.of("FprToSonarQube-issues", STREAM_CAPACITY, consumer->{
+			try {
+				process(new IssueDataSink() {
+					@Override public void issue(SQIssue issue) { consumer.accept(issue); }
+					@Override public void rule(SQRule rule) {}
+					// Rules are not needed, so stop processing once all issues have been processed
+					@Override public void endIssues() { throw new CancellationException(); }
+				});
+			} catch ( CancellationException e ) {
+				// Either all issues have been processed, or the stream has been closed
+			}
+		});
+	}
+	
+	/**
+	 * Get a lazy {@link Stream} of all rules for the FPR file. As rules don't depend 
+	 * on issue folders, this doesn't run ReportGenerator. Closing the stream cancels 
+	 * the conversion.
+	 */
+	public Stream<SQRule> streamRules() {
+		return ProducerStream.of("FprToSonarQube-rules", STREAM_CAPACITY, consumer->{
+			try (FvdlSource source = new FvdlSource(fprFileName)) {
+				new FvdlParser(source).parseRules(new IssueDataSink() {
+					@Override public void issue(SQIssue issue) {}
+					@Override public void rule(SQRule rule) { consumer.accept(rule); }
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Load the IID to folder map. If the concurrentReportGenerator system property 
+	 * is set to true, this is run in the background while the given {@link FvdlParser} 
+	 * performs any processing that doesn't depend on the folders.
+	 */
+	private Map<String, String> getIidToFolderMap(FvdlSource source, FvdlParser fvdlParser) throws IOException, XMLStreamException, InterruptedException {
+		if ( !Boolean.getBoolean("concurrentReportGenerator") ) {
+			return loadIidToFolderMap(source);
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Map<String, String>> iidToFolderMap = executor.submit(()->loadIidToFolderMap(source));
+			fvdlParser.prepare();
+			return iidToFolderMap.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof IOException ) { throw (IOException)cause; }
+			if ( cause instanceof XMLStreamException ) { throw (XMLStreamException)cause; }
+			if ( cause instanceof InterruptedException ) { throw (InterruptedException)cause; }
+			if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+			throw new IOException("Error generating issue report", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Load the IID to folder map. If the nativeFolders system property is set to true,
+	 * folders are calculated by {@link FolderCalculator} without invoking ReportGenerator,
+	 * unless the filter template embedded in the FPR file would assign different folders.
+	 * Otherwise, the issue report is generated and the IID to folder map is loaded from
+	 * it; if the streamReport system property is set to true, the report is parsed while 
+	 * it is being generated, without writing the report to disk. If the reportCacheDir
+	 * system property is set, generated IID to folder maps are cached in the given
+	 * directory, keyed by FPR contents and filter set.
+	 */
+	private Map<String, String> loadIidToFolderMap(FvdlSource source) throws IOException, XMLStreamException, InterruptedException {
+		if ( Boolean.getBoolean("nativeFolders") ) {
+			if ( System.getProperty("filterSet")!=null ) {
+				throw new IllegalArgumentException("The filterSet option is not supported in combination with nativeFolders");
+			}
+			Phase nativeFoldersPhase = source.getMetrics().startPhase("nativeFolders");
+			try {
+				FolderCalculator folderCalculator = new FolderCalculator(source);
+				String unsupportedFeature = folderCalculator.getUnsupportedFilterTemplateFeature();
+				if ( unsupportedFeature==null ) {
+					return folderCalculator.calculate();
+				}
+				LOG.warning("Using ReportGenerator for "+fprFileName+"; the embedded filter template is not supported by nativeFolders: "+unsupportedFeature);
+			} finally {
+				nativeFoldersPhase.close();
+			}
+		}
+		String cacheDir = System.getProperty("reportCacheDir");
+		if ( cacheDir==null ) {
+			return generateIidToFolderMap(source.getMetrics());
+		}
+		IidFolderMapCache cache = new IidFolderMapCache(Paths.get(cacheDir), 
+				Long.getLong("reportCacheMaxSize", 256)*1024*1024, Boolean.getBoolean("iidMapOffHeap"));
+		String key = cache.getKey(fprFileName, System.getProperty("filterSet"));
+		Map<String, String> result = cache.get(key);
+		if ( result==null ) {
+			result = generateIidToFolderMap(source.getMetrics());
+			cache.put(key, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Generate the issue report and load the IID to folder map from it. The
+	 * report file is deleted once it has been parsed.
+	 */
+	private Map<String, String> generateIidToFolderMap(RunMetrics metrics) throws IOException, XMLStreamException, InterruptedException {
+		ReportParser reportParser = new ReportParser(metrics);
+		if ( Boolean.getBoolean("streamReport") ) {
+			Phase reportGeneratorStreamingPhase = metrics.startPhase("reportGeneratorStreaming");
+			try {
+				ReportGenerator.generateIssueReport(fprFileName, reportParser::parse);
+				return reportParser.getIidToFolderMap();
+			} finally {
+				reportGeneratorStreamingPhase.close();
+			}
+		}
+		String reportFileName;
+		Phase reportGeneratorPhase = metrics.startPhase("reportGenerator");
+		try {
+			reportFileName = ReportGenerator.generateIssueReport(fprFileName);
+		} finally {
+			reportGeneratorPhase.close();
+		}
+		Phase reportParserPhase = metrics.startPhase("reportParser");
+		try {
+			return reportParser.parse(reportFileName);
+		} finally {
+			reportParserPhase.close();
+			Files.deleteIfExists(Paths.get(reportFileName));
+		}
+	}
+
+	/**
+	 * Convert the given FPR files concurrently, using a fixed thread pool with the 
+	 * number of threads given by the batchThreads system property (default: number
+	 * of available processors). All conversions share the same JVM, so parsers and 
+	 * mappers are initialized only once. The number of concurrently running 
+	 * ReportGenerator processes is limited by {@link ReportGenerator}. The outcome
+	 * of each conversion is logged; returns the number of FPR files that failed
+	 * to convert.  
+	 */
+	public static int processBatch(List<String> fprFileNames) throws InterruptedException {
+		int threads = Integer.getInteger("batchThreads", Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<?>> results = new LinkedHashMap<>();
+			for ( String fprFileName : fprFileNames ) {
+				results.put(fprFileName, executor.submit(()->{
+					new FprToSonarQube(fprFileName, getOutputFileName(fprFileName)).process();
+					return null;
+				}));
+			}
+			int failed = 0;
+			for ( Map.Entry<String, Future<?>> result : results.entrySet() ) {
+				try {
+					result.getValue().get();
+					LOG.info("Converted "+result.getKey());
+				} catch ( ExecutionException e ) {
+					failed++;
+					LOG.log(Level.SEVERE, "Error converting "+result.getKey(), e.getCause());
+				}
+			}
+			return failed;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Get the list of FPR files for the given arguments; directory arguments 
+	 * are expanded to all FPR files in that directory
+	 */
+	private static List<String> getFprFileNames(String[] args) {
+		List<String> result = new ArrayList<>();
+		for ( String arg : args ) {
+			File file = new File(arg);
+			if ( file.isDirectory() ) {
+				File[] fprFiles = file.listFiles((dir, name)->name.endsWith(".fpr"));
+				if ( fprFiles!=null ) {
+					Arrays.sort(fprFiles);
+					for ( File fprFile : fprFiles ) { result.add(fprFile.getPath()); }
+				}
+			} else {
+				result.add(arg);
+			}
+		}
+		return result;
+	}
+	
+	private static String getOutputFileName(String fprFileName) {
+		return fprFileName.replace(".fpr", ".json");
+	}
+
+	/**
+	 * If the logLevel system property is set, log messages of the given level and 
+	 * above to the console; for example -DlogLevel=FINE logs sampled per-item details. 
+	 */
+	private static void configureLogging() {
+		String logLevel = System.getProperty("logLevel");
+		if ( logLevel!=null ) {
+			Level level = Level.parse(logLevel.toUpperCase());
+			ConsoleHandler handler = new ConsoleHandler();
+			handler.setLevel(level);
+			LOGGER.setLevel(level);
+			LOGGER.addHandler(handler);
+			LOGGER.setUseParentHandlers(false);
 		}
 	}
 
 	public static void main(String[] args) throws IOException, XMLStreamException, InterruptedException {
-		if (args.length != 1) {
-			System.err.println("Usage: java -DreportGenerator=<Fortify ReportGenerator location> -jar FprToSonarQube.jar <file.fpr>");
+		configureLogging();
+		if ( System.getProperty("serverPort")!=null ) {
+			new FprToSonarQubeServer(Integer.getInteger("serverPort")).start();
+			return;
+		}
+		if (args.length < 1) {
+			System.err.println("Usage: java -DreportGenerator=<Fortify ReportGenerator location> -jar FprToSonarQube.jar <file.fpr|directory>...");
+			System.exit(1);
+		}
+		if ( args.length==1 && !new File(args[0]).isDirectory() ) {
+			new FprToSonarQube(args[0], getOutputFileName(args[0])).process();
+		} else if ( processBatch(getFprFileNames(args))>0 ) {
 			System.exit(1);
 		}
-		new FprToSonarQube(args[0], args[0].replace(".fpr", ".json")).process();
 	}
 }
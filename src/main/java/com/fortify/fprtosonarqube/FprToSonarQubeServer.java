@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running conversion server that accepts conversion jobs over loopback HTTP, 
+ * avoiding JVM startup and warm-up costs for every conversion. Conversion requests
+ * are POSTed to /convert, either with an fpr query parameter specifying the path of
+ * a local FPR file, or with the FPR file contents as request body. The SonarQube 
+ * generic issue data is streamed back as the response body. 
+ * 
+ * At most serverThreads (default: number of available processors) conversions are 
+ * run concurrently, and at most serverQueueSize (default: 100) conversions are queued; 
+ * any further requests are rejected with HTTP status 503. Rejected requests are 
+ * handled directly on the {@link HttpServer} dispatcher thread.
+ */
+public class FprToSonarQubeServer {
+	private static final Logger LOG = Logger.getLogger(FprToSonarQubeServer.class.getName());
+	/** Set while a request rejected by the executor is handled on the dispatcher thread */
+	private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+	private final int port;
+	private final int threads = Integer.getInteger("serverThreads", Runtime.getRuntime().availableProcessors());
+	private final int queueSize = Integer.getInteger("serverQueueSize", 100);
+	
+	public FprToSonarQubeServer(int port) {
+		this.port = port;
+	}
+	
+	public void start() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/convert", this::handleConvert);
+		server.setExecutor(new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<>(queueSize), FprToSonarQubeServer::handleRejected));
+		server.start();
+		System.out.println("Listening on "+server.getAddress());
+	}
+	
+	/**
+	 * Handle a conversion request. If the conversion fails after the response
+	 * status has been sent, the exception is propagated to have {@link HttpServer}
+	 * abort the connection, rather than completing a truncated response.
+	 */
+	private void handleConvert(HttpExchange exchange) throws IOException {
+		if ( !"POST".equals(exchange.getRequestMethod()) ) {
+			sendError(exchange, 405, "Only POST is supported");
+		} else if ( Boolean.TRUE.equals(REJECTED.get()) ) {
+			sendError(exchange, 503, "Too many queued conversion jobs");
+		} else {
+			convert(exchange);
+		}
+	}
+	
+	/**
+	 * Run an exchange rejected by the executor on the calling dispatcher thread, 
+	 * having {@link #handleConvert(HttpExchange)} respond with HTTP status 503. 
+	 */
+	private static void handleRejected(Runnable exchange, ThreadPoolExecutor executor) {
+		REJECTED.set(Boolean.TRUE);
+		try {
+			exchange.run();
+		} finally {
+			REJECTED.remove();
+		}
+	}
+	
+	private void convert(HttpExchange exchange) throws IOException {
+		String fprFileName = getQueryParameter(exchange, "fpr");
+		Path uploadedFpr = null;
+		ResponseOutputStream outputStream = new ResponseOutputStream(exchange);
+		try {
+			if ( fprFileName==null ) {
+				uploadedFpr = Files.createTempFile("FortifyFpr", ".fpr");
+				try (InputStream inputStream = exchange.getRequestBody()) {
+					Files.copy(inputStream, uploadedFpr, StandardCopyOption.REPLACE_EXISTING);
+				}
+				fprFileName = uploadedFpr.toString();
+			} else if ( !new File(fprFileName).isFile() ) {
+				sendError(exchange, 404, "FPR file not found: "+fprFileName);
+				return;
+			}
+			new FprToSonarQube(fprFileName).process(outputStream);
+			outputStream.finish();
+		} catch ( Exception e ) {
+			if ( outputStream.isCommitted() ) {
+				// Response status already sent; abort the response to signal the failure 
+				throw new IOException("Error converting "+fprFileName, e);
+			}
+			LOG.log(Level.SEVERE, "Error converting "+fprFileName, e);
+			sendError(exchange, 500, "Error converting "+fprFileName+": "+(e.getMessage()!=null ? e.getMessage() : e.toString()));
+		} finally {
+			if ( uploadedFpr!=null ) { Files.deleteIfExists(uploadedFpr); }
+		}
+	}
+	
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(bytes);
+		}
+	}
+	
+	private static String getQueryParameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+		String query = exchange.getRequestURI().getRawQuery();
+		if ( query!=null ) {
+			for ( String param : query.split("&") ) {
+				int idx = param.indexOf('=');
+				if ( idx>0 && name.equals(param.substring(0, idx)) ) {
+					return URLDecoder.decode(param.substring(idx+1), "UTF-8");
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * {@link OutputStream} that sends the 200 response headers on first write, 
+	 * allowing an error status to be returned if the conversion fails before
+	 * any output has been generated. Closing this stream only flushes the 
+	 * response body; the response is completed by {@link #finish()}.
+	 */
+	private static final class ResponseOutputStream extends FilterOutputStream {
+		private final HttpExchange exchange;
+		private boolean committed = false;
+		
+		public ResponseOutputStream(HttpExchange exchange) {
+			super(null);
+			this.exchange = exchange;
+		}
+		
+		public boolean isCommitted() {
+			return committed;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			commit();
+			out.write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			commit();
+			out.write(b, off, len);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			if ( committed ) { out.flush(); }
+		}
+		
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+		
+		public void finish() throws IOException {
+			commit();
+			out.close();
+		}
+		
+		private void commit() throws IOException {
+			if ( !committed ) {
+				committed = true;
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, 0);
+				out = exchange.getResponseBody();
+			}
+		}
+	}
+}
@@ -26,14 +26,20 @@ package com.fortify.fprtosonarqube;
 
 import java.io.IOException;
 import java.nio.file.Paths;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fortify.fprtosonarqube.domain.fvdl.FvdlDescription;
 import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
 import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Entry;
@@ -44,55 +50,316 @@ import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
 import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
 import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange.TextRangeBuilder;
 import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.sink.IssueDataSink;
+import com.fortify.fprtosonarqube.util.ChunkedVulnerabilitiesParser;
+import com.fortify.fprtosonarqube.util.FvdlScratchFile;
+import com.fortify.fprtosonarqube.util.FvdlSource;
+import com.fortify.fprtosonarqube.util.FvdlScratchFile.Section;
+import com.fortify.fprtosonarqube.util.IssueSpillFile;
+import com.fortify.fprtosonarqube.util.NodePool;
+import com.fortify.fprtosonarqube.util.RuleCache;
+import com.fortify.fprtosonarqube.util.RunMetrics;
+import com.fortify.fprtosonarqube.util.RunMetrics.Counter;
+import com.fortify.fprtosonarqube.util.RunMetrics.Phase;
+import com.fortify.fprtosonarqube.util.SampledLogger;
+import com.fortify.fprtosonarqube.util.StringPool;
 import com.fortify.fprtosonarqube.util.StreamingFvdlParser;
-import com.fortify.util.xml.XmlMapperHelper;
+import com.fortify.fprtosonarqube.util.VulnerabilitiesHandler;
+import com.fortify.util.xml.XmlStreamReaderHelper;
 
 public class FvdlParser {
-	private final String fprFileName;
-	private final Map<String, String> iidToFolderMap;
-	private Map<String, Node> nodePool = null;
+	private static final int STRING_POOL_SIZE = 1<<20;
+	private static final SampledLogger LOG = new SampledLogger(FvdlParser.class);
+	private final FvdlSource source;
+	private final RunMetrics metrics;
+	private final DomainReader domainReader = DomainReader.getDefault();
+	private final boolean singlePass = Boolean.getBoolean("singlePass");
+	private final boolean allRules = Boolean.getBoolean("allRules");
+	private final int parallelChunks = Integer.getInteger("parallelChunks", 1);
+	private final int maxSecondaryLocations = Integer.getInteger("secondaryLocations", 0);
+	private final Set<String> referencedRuleIds = ConcurrentHashMap.newKeySet();
+	private final StringPool ruleIds = new StringPool(STRING_POOL_SIZE);
+	private final StringPool messages = new StringPool(STRING_POOL_SIZE);
+	private final StringPool filePaths = new StringPool(STRING_POOL_SIZE);
+	private final StringPool sourcePaths = new StringPool(STRING_POOL_SIZE);
+	private Map<String, String> iidToFolderMap = null;
+	private NodePool nodePool = null;
+	private List<SQRule> rules = null;
 	private String sourceBasePath = null;
+	private boolean rulesStarted = false;
 	
-	public FvdlParser(String fprFileName, Map<String, String> iidToFolderMap) {
-		this.fprFileName = fprFileName;
-		this.iidToFolderMap = iidToFolderMap;
+	public FvdlParser(FvdlSource source) {
+		this.source = source;
+		this.metrics = source.getMetrics();
 	}
-
-	private Map<String, Node> getNodePool() throws IOException, XMLStreamException {
+	
+	/**
+	 * Perform any processing that doesn't depend on the IID to folder map, like extracting
+	 * audit.fvdl to a scratch file, loading the node pool and loading rules. This allows 
+	 * this processing to be run while the IID to folder map is still being generated. If 
+	 * this method is not called, the corresponding processing is done by 
+	 * {@link #parse(IssueDataSink, Map)}. 
+	 */
+	public void prepare() throws IOException, XMLStreamException {
+		Phase preparePhase = metrics.startPhase("prepare");
+		try {
+			source.getScratchFile();
+			if ( !singlePass ) {
+				getNodePool();
+				if ( getRuleCache()==null ) {
+					rules = loadRules();
+				}
+			}
+		} finally {
+			preparePhase.close();
+		}
+	}
+	
+	/**
+	 * Get the node pool, loading it on first access. As the node pool comes after the
+	 * vulnerabilities in audit.fvdl, this collects the id's of all nodes referenced by 
+	 * vulnerabilities in the IID to folder map and loads only those nodes, in a single
+	 * pass over both sections. If the IID to folder map is not yet available, i.e. when
+	 * called from {@link #prepare()}, nodes referenced by any vulnerability are loaded.
+	 */
+	private synchronized NodePool getNodePool() throws IOException, XMLStreamException {
 		if ( nodePool == null ) {
-			nodePool = new LinkedHashMap<String, FvdlVulnerability.Node>();
-			new StreamingFvdlParser()
-					.handler("UnifiedNodePool/Node", reader-> {
-						Node node = XmlMapperHelper.getDefaultXmlMapper().readValue(reader, Node.class);
-						nodePool.put(node.getId(), node);
-					}).parseFpr(fprFileName);
+			Phase nodePoolPhase = metrics.startPhase("nodePool");
+			try {
+				NodePool result = new NodePool();
+				source.parse(new StreamingFvdlParser()
+						.handler("Vulnerabilities/Vulnerability", reader->addReferencedNodeIds(reader, result))
+						.handler("UnifiedNodePool/Node", reader-> {
+							if ( result.isReferenced(reader.getAttributeValue(null, "id")) ) {
+								Node node = domainReader.readNode(reader);
+								result.add(node.getId(), node.getSourceLocation());
+							} else {
+								XmlStreamReaderHelper.skipElement(reader);
+							}
+						}), Section.VULNERABILITIES, Section.UNIFIED_NODE_POOL);
+				result.clearReferences();
+				nodePool = result;
+			} finally {
+				nodePoolPhase.close();
+			}
 		}
 		return nodePool;
 	}
-
-	public void parse(final JsonGenerator generator) throws IOException, XMLStreamException {
-		writeIssues(generator);
-		writeRules(generator);
+	
+	/**
+	 * Register the id's of all NodeRef elements in the current Vulnerability element as
+	 * referenced in the given node pool, if the IID to folder map is not yet available or
+	 * contains the vulnerability instance id. 
+	 */
+	private void addReferencedNodeIds(XMLStreamReader reader, NodePool nodePool) throws XMLStreamException {
+		String iid = null;
+		List<String> nodeIds = new ArrayList<>();
+		for ( int depth = 1 ; depth>0 ; ) {
+			int event = reader.next();
+			if ( event==XMLEvent.START_ELEMENT ) {
+				String name = reader.getLocalName();
+				if ( iid==null && "InstanceID".equals(name) ) {
+					iid = reader.getElementText();
+				} else {
+					if ( "NodeRef".equals(name) ) { nodeIds.add(reader.getAttributeValue(null, "id")); }
+					depth++;
+				}
+			} else if ( event==XMLEvent.END_ELEMENT ) {
+				depth--;
+			}
+		}
+		if ( iid!=null && (iidToFolderMap==null || iidToFolderMap.containsKey(iid)) ) {
+			nodeIds.forEach(nodePool::addReference);
+		}
+	}
+	
+	private SourceLocation getPooledSourceLocation(String nodeRefId) throws IOException, XMLStreamException {
+		return countNodePoolLookup(getNodePool().get(nodeRefId));
+	}
+	
+	private SourceLocation countNodePoolLookup(SourceLocation sourceLocation) {
+		metrics.increment(sourceLocation!=null ? Counter.NODE_POOL_HITS : Counter.NODE_POOL_MISSES);
+		return sourceLocation;
 	}
 
-	private void writeIssues(final JsonGenerator generator) throws IOException, XMLStreamException {
-		generator.writeArrayFieldStart("issues");
-		if ( !iidToFolderMap.isEmpty() ) {
-			new StreamingFvdlParser()
+	/**
+	 * Pass all issues for which the given IID to folder map contains a folder, 
+	 * followed by all rules, to the given {@link IssueDataSink}.
+	 */
+	public void parse(final IssueDataSink sink, Map<String, String> iidToFolderMap) throws IOException, XMLStreamException {
+		if ( singlePass && maxSecondaryLocations>0 ) {
+			throw new IllegalArgumentException("The secondaryLocations option is not supported in combination with singlePass");
+		}
+		this.iidToFolderMap = iidToFolderMap;
+		IssueDataSink countingSink = getCountingSink(sink);
+		if ( singlePass ) {
+			Phase singlePassPhase = metrics.startPhase("singlePass");
+			try {
+				parseSinglePass(countingSink);
+			} finally {
+				singlePassPhase.close();
+			}
+		} else {
+			Phase issuesPhase = metrics.startPhase("issues");
+			try {
+				writeIssues(countingSink);
+			} finally {
+				issuesPhase.close();
+				closeNodePool();
+			}
+			Phase rulesPhase = metrics.startPhase("rules");
+			try {
+				writeRules(countingSink);
+			} finally {
+				rulesPhase.close();
+			}
+		}
+	}
+	
+	/**
+	 * Get an {@link IssueDataSink} that delegates to the given sink, counting 
+	 * emitted issues and rules, and recording the rule ids of emitted issues.
+	 */
+	private IssueDataSink getCountingSink(IssueDataSink sink) {
+		return new IssueDataSink() {
+			@Override public void startIssues() throws IOException { sink.startIssues(); }
+			@Override public void endIssues() throws IOException { sink.endIssues(); }
+			@Override public void startRules() throws IOException { sink.startRules(); }
+			@Override public void endRules() throws IOException { sink.endRules(); }
+			@Override
+			public void issue(SQIssue issue) throws IOException {
+				referencedRuleIds.add(issue.getRuleId());
+				sink.issue(issue);
+				metrics.increment(Counter.ISSUES_EMITTED);
+			}
+			@Override
+			public void rule(SQRule rule) throws IOException {
+				sink.rule(rule);
+				metrics.increment(Counter.RULES_EMITTED);
+			}
+		};
+	}
+	
+	private synchronized void closeNodePool() throws IOException {
+		if ( nodePool!=null ) {
+			nodePool.close();
+			nodePool = null;
+		}
+	}
+	
+	/**
+	 * Write issues and rules while inflating and parsing audit.fvdl only once. As
+	 * UnifiedNodePool comes after Vulnerabilities in audit.fvdl, issues are written
+	 * directly only until we encounter the first issue that references a node in
+	 * the node pool; from then on, issues are parked in an {@link IssueSpillFile} 
+	 * (to preserve issue order) until the referenced nodes have been loaded.
+	 */
+	private void parseSinglePass(final IssueDataSink sink) throws IOException, XMLStreamException {
+		try ( IssueSpillFile spillFile = new IssueSpillFile();
+			  VulnerabilitiesHandler<FvdlVulnerability> vulnerabilitiesHandler = new VulnerabilitiesHandler<>(
+					domainReader, iidToFolderMap::containsKey, vuln->vuln, vuln->writeOrSpillIssue(sink, spillFile, vuln)) ) {
+			nodePool = new NodePool();
+			sink.startIssues();
+			StreamingFvdlParser parser = new StreamingFvdlParser()
 				.handler("Build/SourceBasePath", reader->sourceBasePath=reader.getElementText())
-				.handler("Vulnerabilities/Vulnerability", reader->{
-					FvdlVulnerability vuln = XmlMapperHelper.getDefaultXmlMapper().readValue(reader, FvdlVulnerability.class);
-					SQIssue issue = getSQIssue(vuln);
-					if ( issue!=null ) {
-						generator.writeObject(issue);
+				.handler("UnifiedNodePool/Node", reader->{
+					if ( spillFile.getReferencedNodeIds().contains(reader.getAttributeValue(null, "id")) ) {
+						Node node = domainReader.readNode(reader);
+						nodePool.add(node.getId(), node.getSourceLocation());
+					} else {
+						XmlStreamReaderHelper.skipElement(reader);
 					}
 				})
-				.parseFpr(fprFileName);
+				.handler("Description", reader->{
+					startRulesSinglePass(sink, spillFile);
+					if ( allRules || referencedRuleIds.contains(reader.getAttributeValue(null, "classID")) ) {
+						sink.rule(getRule(domainReader.readDescription(reader)));
+					} else {
+						XmlStreamReaderHelper.skipElement(reader);
+					}
+				});
+			if ( !iidToFolderMap.isEmpty() ) {
+				parser.handler("Vulnerabilities", vulnerabilitiesHandler);
+			}
+			source.parse(parser, Section.BUILD, Section.DESCRIPTION);
+			startRulesSinglePass(sink, spillFile);
+			sink.endRules();
+		} finally {
+			closeNodePool();
+		}
+	}
+
+	private void writeOrSpillIssue(final IssueDataSink sink, IssueSpillFile spillFile, FvdlVulnerability vuln) throws IOException {
+		metrics.increment(Counter.VULNERABILITIES_BOUND);
+		String iid = vuln.getInstanceInfo().getInstanceID();
+		String folder = iidToFolderMap.get(iid);
+		if ( folder!=null ) {
+			Entry entry = vuln.getAnalysisInfo().getUnified().getTrace().getPrimary().getDefaultEntry();
+			Node node = entry.getNode();
+			String ruleId = vuln.getClassInfo().getClassID();
+			String message = getMessage(vuln);
+			if ( node==null && entry.getNodeRef()!=null ) {
+				spillFile.add(iid, ruleId, message, folder, entry.getNodeRef().getId());
+			} else if ( node!=null && node.getSourceLocation()!=null ) {
+				if ( spillFile.isEmpty() ) {
+					sink.issue(getSQIssue(iid, ruleId, message, folder, node.getSourceLocation()));
+				} else {
+					spillFile.add(iid, ruleId, message, folder, node.getSourceLocation());
+				}
+			}
 		}
-		generator.writeEndArray();
 	}
 	
-	private SQIssue getSQIssue(FvdlVulnerability vuln) throws IOException, XMLStreamException {
+	/**
+	 * If not done yet, write any spilled issues, end the issues array 
+	 * and start the rules array.
+	 */
+	private void startRulesSinglePass(final IssueDataSink sink, IssueSpillFile spillFile) throws IOException {
+		if ( !rulesStarted ) {
+			rulesStarted = true;
+			spillFile.replay((iid, ruleId, message, folder, sourceLocation, nodeRefId)->{
+				SourceLocation resolvedSourceLocation = sourceLocation!=null ? sourceLocation : countNodePoolLookup(nodePool.get(nodeRefId));
+				if ( resolvedSourceLocation!=null ) {
+					sink.issue(getSQIssue(iid, ruleId, message, folder, resolvedSourceLocation));
+				}
+			});
+			sink.endIssues();
+			sink.startRules();
+		}
+	}
+
+	/**
+	 * Write all issues. If the parallelChunks system property is larger than 1 and
+	 * audit.fvdl has been extracted to a scratch file, the Vulnerabilities section
+	 * is parsed in chunks by a {@link ChunkedVulnerabilitiesParser}. 
+	 */
+	private void writeIssues(final IssueDataSink sink) throws IOException, XMLStreamException {
+		sink.startIssues();
+		FvdlScratchFile scratchFile = parallelChunks>1 ? source.getScratchFile() : null;
+		if ( iidToFolderMap.isEmpty() ) {
+			// Nothing to write
+		} else if ( scratchFile!=null ) {
+			source.parse(new StreamingFvdlParser()
+				.handler("Build/SourceBasePath", reader->sourceBasePath=reader.getElementText()), 
+				Section.BUILD, Section.BUILD);
+			new ChunkedVulnerabilitiesParser<>(domainReader, iidToFolderMap::containsKey, this::getSQIssue, sink::issue, metrics)
+				.parse(scratchFile, parallelChunks);
+		} else {
+			try ( VulnerabilitiesHandler<SQIssue> vulnerabilitiesHandler = new VulnerabilitiesHandler<>(
+					domainReader, iidToFolderMap::containsKey, this::getSQIssue, sink::issue) ) {
+				source.parse(new StreamingFvdlParser()
+					.handler("Build/SourceBasePath", reader->sourceBasePath=reader.getElementText())
+					.handler("Vulnerabilities", vulnerabilitiesHandler), 
+					Section.BUILD, Section.VULNERABILITIES);
+			}
+		}
+		sink.endIssues();
+	}
+	
+	/** Package-private to allow for benchmarking */
+	SQIssue getSQIssue(FvdlVulnerability vuln) throws IOException, XMLStreamException {
+		metrics.increment(Counter.VULNERABILITIES_BOUND);
 		SQIssue issue = null;
 		// TODO Add null checks
 		String iid = vuln.getInstanceInfo().getInstanceID();
@@ -100,20 +367,62 @@ public class FvdlParser {
 		if ( folder!=null ) {
 			Entry entry = vuln.getAnalysisInfo().getUnified().getTrace().getPrimary().getDefaultEntry();
 			Node node = entry.getNode();
-			if ( node==null && entry.getNodeRef()!=null) {
-				node = getNodePool().get(entry.getNodeRef().getId());
-			}
-			if ( node!= null && node.getSourceLocation()!=null ) {
-				issue = SQIssue.builder()
-					.engineId("Fortify")
-					.ruleId(vuln.getClassInfo().getClassID())
-					.type("VULNERABILITY")
-					.severity(getSeverity(folder))
-					.primaryLocation(getPrimaryLocation(vuln, node.getSourceLocation())).build();
+			SourceLocation sourceLocation = node!=null ? node.getSourceLocation() 
+					: entry.getNodeRef()!=null ? getPooledSourceLocation(entry.getNodeRef().getId()) : null;
+			if ( sourceLocation!=null ) {
+				issue = getSQIssue(iid, vuln.getClassInfo().getClassID(), getMessage(vuln), folder, sourceLocation);
+				if ( maxSecondaryLocations>0 ) {
+					issue.setSecondaryLocations(getSecondaryLocations(vuln.getAnalysisInfo().getUnified().getTrace().getPrimary().getEntries(), entry));
+				}
 			}
 		}
 		return issue;
 	}
+	
+	private SQIssue getSQIssue(String iid, String ruleId, String message, String folder, SourceLocation sourceLocation) {
+		return SQIssue.builder()
+			.instanceId(iid)
+			.engineId("Fortify")
+			.ruleId(ruleIds.intern(ruleId))
+			.type("VULNERABILITY")
+			.severity(getSeverity(folder))
+			.primaryLocation(getLocation(message, sourceLocation)).build();
+	}
+	
+	/**
+	 * Get the secondary locations for the trace entries other than the given primary
+	 * entry, in trace order, up to the number of entries given by the secondaryLocations
+	 * system property. Node references of all selected entries are resolved in a single 
+	 * batch; entries without source location are ignored. Returns null if there are no
+	 * secondary locations.
+	 */
+	private Location[] getSecondaryLocations(List<Entry> entries, Entry primaryEntry) throws IOException, XMLStreamException {
+		List<SourceLocation> sourceLocations = new ArrayList<>();
+		List<String> nodeRefIds = new ArrayList<>();
+		for ( Entry entry : entries ) {
+			if ( sourceLocations.size()>=maxSecondaryLocations ) { break; }
+			if ( entry!=primaryEntry ) {
+				if ( entry.getNode()!=null ) {
+					if ( entry.getNode().getSourceLocation()!=null ) { sourceLocations.add(entry.getNode().getSourceLocation()); }
+				} else if ( entry.getNodeRef()!=null ) {
+					sourceLocations.add(null);
+					nodeRefIds.add(entry.getNodeRef().getId());
+				}
+			}
+		}
+		SourceLocation[] pooledSourceLocations = nodeRefIds.isEmpty() ? null : getNodePool().getAll(nodeRefIds);
+		List<Location> result = new ArrayList<>(sourceLocations.size());
+		int nodeRefIndex = 0;
+		for ( SourceLocation sourceLocation : sourceLocations ) {
+			if ( sourceLocation==null ) {
+				sourceLocation = countNodePoolLookup(pooledSourceLocations[nodeRefIndex++]);
+			}
+			if ( sourceLocation!=null ) {
+				result.add(getLocation(null, sourceLocation));
+			}
+		}
+		return result.isEmpty() ? null : result.toArray(new Location[result.size()]);
+	}
 
 	private String getSeverity(String folder) {
 		if ( "Critical".equalsIgnoreCase(folder) ) {
@@ -127,20 +436,33 @@ public class FvdlParser {
 		}
 	}
 
-	private Location getPrimaryLocation(FvdlVulnerability vuln, SourceLocation sourceLocation) {
+	/**
+	 * Get the issue message; as type and subtype are determined by the 
+	 * class id, the message is built only once for every class id.
+	 */
+	private String getMessage(FvdlVulnerability vuln) {
+		return messages.resolve(vuln.getClassInfo().getClassID(), classID->buildMessage(vuln));
+	}
+	
+	private String buildMessage(FvdlVulnerability vuln) {
 		String msg = vuln.getClassInfo().getType();
 		if ( StringUtils.isNotBlank(vuln.getClassInfo().getSubtype()) ) {
 			msg += ": "+vuln.getClassInfo().getSubtype();
 		}
+		return msg;
+	}
+
+	private Location getLocation(String msg, SourceLocation sourceLocation) {
 		return Location.builder()
-			.filePath(Paths.get(sourceBasePath, sourceLocation.getPath()).toFile().getAbsolutePath())
+			.filePath(filePaths.resolve(sourceLocation.getPath(), path->Paths.get(sourceBasePath, path).toFile().getAbsolutePath()))
+			.sourcePath(sourcePaths.intern(sourceLocation.getPath()))
 			.message(msg) // TODO Add/use abstract?
 			.textRange(getTextRange(sourceLocation))
 			.build();
 	}
 
 	private TextRange getTextRange(SourceLocation sourceLocation) {
-		System.out.println(sourceLocation);
+		LOG.log(Level.FINE, sourceLocation::toString);
 		TextRangeBuilder textRangeBuilder = TextRange.builder()
 			.startLine(sourceLocation.getLine())
 			.startColumn(sourceLocation.getColStart());
@@ -153,18 +475,89 @@ public class FvdlParser {
 		return textRangeBuilder.build();
 	}
 	
-	private void writeRules(final JsonGenerator generator) throws IOException, XMLStreamException {
-		generator.writeArrayFieldStart("rules");
-		new StreamingFvdlParser()
-			.handler("Description", reader->{
-				FvdlDescription desc = XmlMapperHelper.getDefaultXmlMapper().readValue(reader, FvdlDescription.class);
-				SQRule rule = getRule(desc);
-				if ( rule!=null ) {
-					generator.writeObject(rule);
+	/**
+	 * Pass all rules to the given {@link IssueDataSink}, independent of 
+	 * whether they are referenced by any issues.
+	 */
+	public void parseRules(final IssueDataSink sink) throws IOException, XMLStreamException {
+		IssueDataSink countingSink = getCountingSink(sink);
+		Phase rulesPhase = metrics.startPhase("rules");
+		try {
+			countingSink.startRules();
+			for ( SQRule rule : loadRules() ) {
+				countingSink.rule(rule);
+			}
+			countingSink.endRules();
+		} finally {
+			rulesPhase.close();
+		}
+	}
+	
+	/**
+	 * Write the rules referenced by any of the written issues, or all rules if 
+	 * the allRules system property is set to true. If the ruleCacheDir system
+	 * property is set and audit.fvdl has been extracted to a scratch file, rules are
+	 * taken from the {@link RuleCache} if all referenced rules are available in the 
+	 * cache, in which case descriptions are not parsed. As cached rules don't retain
+	 * the FVDL order, rules are written sorted by rule id whenever the rule cache is 
+	 * used, so the output doesn't depend on the cache contents.
+	 */
+	private void writeRules(final IssueDataSink sink) throws IOException, XMLStreamException {
+		sink.startRules();
+		RuleCache ruleCache = getRuleCache();
+		String ruleCacheKey = ruleCache==null ? null : ruleCache.getKey(loadRulePackVersions());
+		Map<String, SQRule> cachedRules = ruleCache==null ? null : ruleCache.get(ruleCacheKey);
+		if ( rules==null && cachedRules!=null && !allRules && cachedRules.keySet().containsAll(referencedRuleIds) ) {
+			rules = new ArrayList<>(cachedRules.values());
+		} else {
+			if ( rules==null ) { rules = loadRules(); }
+			if ( ruleCache!=null ) { ruleCache.put(ruleCacheKey, cachedRules, rules); }
+		}
+		if ( ruleCache!=null ) {
+			rules.sort(Comparator.comparing(SQRule::getRuleId, Comparator.nullsFirst(Comparator.naturalOrder())));
+		}
+		for ( SQRule rule : rules ) {
+			if ( allRules || referencedRuleIds.contains(rule.getRuleId()) ) {
+				sink.rule(rule);
+			}
+		}
+		sink.endRules();
+	}
+	
+	private List<SQRule> loadRules() throws IOException, XMLStreamException {
+		List<SQRule> result = new ArrayList<>();
+		source.parse(new StreamingFvdlParser()
+			.handler("Description", reader->result.add(getRule(domainReader.readDescription(reader)))), 
+			Section.DESCRIPTION, Section.DESCRIPTION);
+		return result;
+	}
+	
+	private List<String> loadRulePackVersions() throws IOException, XMLStreamException {
+		List<String> result = new ArrayList<>();
+		source.parse(new StreamingFvdlParser()
+			.handler("EngineData/RulePacks/RulePack", reader->{
+				String id = null, version = null;
+				while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+					switch ( reader.getLocalName() ) {
+					case "RulePackID": id = reader.getElementText(); break;
+					case "Version": version = reader.getElementText(); break;
+					default: XmlStreamReaderHelper.skipElement(reader);
+					}
 				}
-			})
-			.parseFpr(fprFileName);
-		generator.writeEndArray();
+				result.add(id+":"+version);
+			}), Section.ENGINE_DATA, Section.ENGINE_DATA);
+		return result;
+	}
+	
+	/**
+	 * Get the {@link RuleCache}, or null if the ruleCacheDir system property is not set
+	 * or audit.fvdl hasn't been extracted to a scratch file. Without scratch file, reading
+	 * the rule pack versions from EngineData (the last audit.fvdl section) would require 
+	 * an additional full scan, costing more than parsing the rule descriptions. 
+	 */
+	private RuleCache getRuleCache() throws IOException {
+		String ruleCacheDir = System.getProperty("ruleCacheDir");
+		return ruleCacheDir==null || source.getScratchFile()==null ? null : new RuleCache(Paths.get(ruleCacheDir));
 	}
 
 	private SQRule getRule(FvdlDescription desc) {
@@ -173,8 +566,27 @@ public class FvdlParser {
 			.ruleId(desc.getClassID())
 			.name(desc.getClassID())
 			// TODO Add recommendations and other elements to description
-			.description(desc.getExplanation().replace("<Content>", "").replace("</Content>", ""))
+			.description(removeContentTags(desc.getExplanation()))
 			.severity("BLOCKER")
 			.type("VULNERABILITY").build();
 	}
+	
+	/**
+	 * Remove all &lt;Content&gt; and &lt;/Content&gt; tags from the given 
+	 * text in a single pass, without creating intermediate strings.
+	 */
+	private static String removeContentTags(String text) {
+		int idx = text.indexOf("Content>");
+		if ( idx<0 ) { return text; }
+		StringBuilder sb = new StringBuilder(text.length());
+		int start = 0;
+		for ( ; idx>=0 ; idx = text.indexOf("Content>", idx+8) ) {
+			int tagStart = idx>=2 && text.startsWith("</", idx-2) ? idx-2 : idx>=1 && text.charAt(idx-1)=='<' ? idx-1 : -1;
+			if ( tagStart>=start ) {
+				sb.append(text, start, tagStart);
+				start = idx+8;
+			}
+		}
+		return sb.append(text, start, text.length()).toString();
+	}
 }
@@ -25,52 +25,217 @@
 package com.fortify.fprtosonarqube;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.stream.XMLStreamException;
 
 public class ReportGenerator {
+	/** Limits the number of concurrently running ReportGenerator processes, for example in batch mode */
+	private static final Semaphore PROCESS_PERMITS = new Semaphore(
+			Integer.getInteger("maxReportGenerators", Math.max(1, Runtime.getRuntime().availableProcessors()/2)), true);
+	
+	/**
+	 * Functional interface for consuming the generated report while it is being generated
+	 */
+	@FunctionalInterface
+	public static interface ReportConsumer {
+		void accept(InputStream inputStream) throws IOException, XMLStreamException;
+	}
+	
+	/**
+	 * Generate the issue report to a temporary file, and return the absolute path of 
+	 * that file. The caller is responsible for deleting the file once it has been parsed.
+	 */
 	public static final String generateIssueReport(String fprFileName) throws IOException, InterruptedException {
 		File reportFile = getReportFile();
-		File outputFile = getOutputFile();
-		generateIssueReport(fprFileName, reportFile, outputFile);
-		return outputFile.getAbsolutePath();
+		try {
+			File outputFile = getOutputFile();
+			try {
+				generateIssueReport(fprFileName, reportFile, outputFile);
+				return outputFile.getAbsolutePath();
+			} catch ( IOException | InterruptedException | RuntimeException e ) {
+				outputFile.delete();
+				throw e;
+			}
+		} finally {
+			reportFile.delete();
+		}
+	}
+	
+	/**
+	 * Generate the issue report, passing the report contents to the given {@link ReportConsumer}
+	 * while the report is being generated. ReportGenerator writes the report to a named pipe,
+	 * so the report is never written to disk. If named pipes are not supported on the current
+	 * platform, the report is generated to a temporary file which is then passed to the 
+	 * {@link ReportConsumer}, and deleted afterwards.
+	 */
+	public static final void generateIssueReport(String fprFileName, ReportConsumer consumer) throws IOException, InterruptedException, XMLStreamException {
+		Path pipeDir = Files.createTempDirectory("FortifyReport");
+		File pipe = new File(pipeDir.toFile(), "report.xml");
+		try {
+			if ( !createNamedPipe(pipe) ) {
+				File outputFile = new File(generateIssueReport(fprFileName));
+				try ( InputStream inputStream = new FileInputStream(outputFile) ) {
+					consumer.accept(inputStream);
+				} finally {
+					outputFile.delete();
+				}
+			} else {
+				File reportFile = getReportFile();
+				try {
+					streamIssueReport(fprFileName, reportFile, pipe, consumer);
+				} finally {
+					reportFile.delete();
+				}
+			}
+		} finally {
+			pipe.delete();
+			pipeDir.toFile().delete();
+		}
 	}
 
 	private static final void generateIssueReport(String fprFileName, File reportFile, File outputFile) throws IOException, InterruptedException {
+		File logFile = getLogFile();
+		PROCESS_PERMITS.acquire();
+		try {
+			Process process = startReportGenerator(fprFileName, reportFile, outputFile, logFile);
+			try {
+				if ( process.waitFor()!=0 ) { throw getReportGeneratorException(process, logFile, null); }
+				logFile.delete();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				throw e;
+			}
+		} finally {
+			PROCESS_PERMITS.release();
+		}
+	}
+	
+	private static final void streamIssueReport(String fprFileName, File reportFile, File pipe, ReportConsumer consumer) throws IOException, InterruptedException, XMLStreamException {
+		File logFile = getLogFile();
+		PROCESS_PERMITS.acquire();
+		try {
+			Process process = startReportGenerator(fprFileName, reportFile, pipe, logFile);
+			AtomicBoolean pipeOpened = new AtomicBoolean(false);
+			unblockPipeOnExit(process, pipe, pipeOpened);
+			try {
+				try ( InputStream inputStream = openPipe(pipe, pipeOpened) ) {
+					consumer.accept(inputStream);
+				} catch ( IOException | XMLStreamException | RuntimeException e ) {
+					// Report the ReportGenerator failure rather than the resulting parse error, if any
+					if ( process.waitFor()!=0 ) { throw getReportGeneratorException(process, logFile, e); }
+					throw e;
+				}
+				if ( process.waitFor()!=0 ) { throw getReportGeneratorException(process, logFile, null); }
+				logFile.delete();
+			} finally {
+				process.destroyForcibly();
+			}
+		} finally {
+			PROCESS_PERMITS.release();
+		}
+	}
+	
+	private static final InputStream openPipe(File pipe, AtomicBoolean pipeOpened) throws IOException {
+		try {
+			return new FileInputStream(pipe); // Blocks until ReportGenerator opens the pipe for writing
+		} finally {
+			pipeOpened.set(true);
+		}
+	}
+	
+	/**
+	 * Opening a named pipe for reading blocks until the pipe is opened for writing. If 
+	 * ReportGenerator exits without ever opening the pipe, we briefly open the pipe for 
+	 * writing ourselves, to have the reader receive an end-of-file rather than blocking 
+	 * indefinitely.
+	 */
+	private static final void unblockPipeOnExit(Process process, File pipe, AtomicBoolean pipeOpened) {
+		Thread thread = new Thread(()->{
+			try {
+				process.waitFor();
+				if ( !pipeOpened.get() ) {
+					new FileOutputStream(pipe).close();
+				}
+			} catch (InterruptedException | IOException e) {
+				// Nothing we can do
+			}
+		}, "ReportGenerator-pipe-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private static final IOException getReportGeneratorException(Process process, File logFile, Exception cause) {
+		return new IOException("ReportGenerator failed with exit code "+process.exitValue()
+			+", see "+logFile.getAbsolutePath()+" for details", cause);
+	}
+	
+	private static final Process startReportGenerator(String fprFileName, File reportFile, File outputFile, File logFile) throws IOException {
 		String reportGeneratorCmd = System.getProperty("reportGenerator");
 		if ( reportGeneratorCmd==null ) {
 			throw new IllegalArgumentException("Missing required parameter -DreportGenerator=<Fortify ReportGenerator location>");
 		}
 		String filterSet = System.getProperty("filterSet");
-		List<String> args = Arrays.asList(
+		List<String> args = new ArrayList<>(Arrays.asList(
 				reportGeneratorCmd
 				, "-template", reportFile.getAbsolutePath()
 				, "-f", outputFile.getAbsolutePath()
 				, "-format", "xml"
-				, "-source", fprFileName);
+				, "-source", fprFileName));
 		if ( filterSet!=null ) {
 			args.add("-filterSet");
 			args.add(filterSet);
 		}
-		new ProcessBuilder(args).start().waitFor();
+		// Redirect output to a log file, to avoid ReportGenerator blocking on a full output buffer
+		return new ProcessBuilder(args).redirectErrorStream(true)
+				.redirectOutput(Redirect.appendTo(logFile)).start();
 	}
-
+	
+	private static final boolean createNamedPipe(File pipe) throws InterruptedException {
+		try {
+			return new ProcessBuilder("mkfifo", pipe.getAbsolutePath()).start().waitFor()==0;
+		} catch (IOException e) {
+			return false; // mkfifo not available on this platform
+		}
+	}
+	
+	/**
+	 * ReportGenerator output is written to a temporary log file, which is 
+	 * only retained if ReportGenerator fails.
+	 */
+	private static final File getLogFile() throws IOException {
+		return File.createTempFile("FortifyReportGenerator", ".log");
+	}
+	
 	private static final File getOutputFile() throws IOException {
-		File outputFile = File.createTempFile("FortifyReport", ".xml");
-		outputFile.deleteOnExit();
-		return outputFile;
+		return File.createTempFile("FortifyReport", ".xml");
 	}
 
+	/**
+	 * Copy the report template to a temporary file, which must be deleted by the caller
+	 * once ReportGenerator has finished. 
+	 */
 	private static final File getReportFile() throws IOException {
 		File reportFile = File.createTempFile("FortifyIssueReport", ".xml");
 		try (InputStream inputStream = ClassLoader
 				.getSystemResourceAsStream("reportgenerator/IssueReport.xml")) {
 			Files.copy(inputStream, reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 			return reportFile;
+		} catch ( IOException | RuntimeException e ) {
+			reportFile.delete();
+			throw e;
 		}
 	}
 
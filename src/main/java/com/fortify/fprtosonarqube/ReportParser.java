@@ -24,36 +24,60 @@
  ******************************************************************************/
 package com.fortify.fprtosonarqube;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.logging.Level;
 
 import javax.xml.stream.XMLStreamException;
 
-import org.mapdb.DB;
-import org.mapdb.Serializer;
-
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fortify.fprtosonarqube.domain.report.ReportIssue;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.util.IidFolderMap;
+import com.fortify.fprtosonarqube.util.RunMetrics;
+import com.fortify.fprtosonarqube.util.RunMetrics.Counter;
+import com.fortify.fprtosonarqube.util.SampledLogger;
 import com.fortify.util.xml.StreamingXmlParser;
-import com.fortify.util.xml.XmlMapperHelper;
 
 public class ReportParser {
-	private final String reportFileName;
-	private final Map<String,String> iidToFolderMap;
+	private static final SampledLogger LOG = new SampledLogger(ReportParser.class);
+	private final Map<String,String> iidToFolderMap = new IidFolderMap(Boolean.getBoolean("iidMapOffHeap"));
+	private final RunMetrics metrics;
+	private final StreamingXmlParser parser;
 	
-	public ReportParser(String reportFileName, DB db) {
-		this.reportFileName = reportFileName;
-		iidToFolderMap = db.hashMap("rules", Serializer.STRING_ASCII, Serializer.STRING_ASCII).create();
-	}
-
-	public Map<String,String> parse(final JsonGenerator generator) throws IOException, XMLStreamException {
-		new StreamingXmlParser()
+	public ReportParser(RunMetrics metrics) {
+		this.metrics = metrics;
+		this.parser = new StreamingXmlParser()
 			.handler("ReportSection/SubSection/IssueListing/Chart/GroupingSection/Issue", reader->{
-				ReportIssue issue = XmlMapperHelper.getDefaultXmlMapper().readValue(reader, ReportIssue.class);
-				System.out.println(issue);
+				ReportIssue issue = DomainReader.getDefault().readReportIssue(reader);
+				LOG.log(Level.FINE, issue::toString);
+				metrics.increment(Counter.REPORT_ISSUES);
 				iidToFolderMap.put(issue.getIid(), issue.getFolder());
-			})
-			.parse(reportFileName);
+			});
+	}
+	
+	public ReportParser() {
+		this(new RunMetrics(null));
+	}
+	
+	public Map<String,String> parse(String reportFileName) throws IOException, XMLStreamException {
+		try (InputStream inputStream = new FileInputStream(reportFileName)) {
+			return parse(inputStream);
+		}
+	}
+	
+	public Map<String,String> parse(InputStream inputStream) throws IOException, XMLStreamException {
+		long elementCount = parser.getElementCount();
+		try {
+			parser.parse(inputStream);
+		} finally {
+			metrics.add(Counter.ELEMENTS_SCANNED, parser.getElementCount()-elementCount);
+		}
+		return iidToFolderMap;
+	}
+	
+	public Map<String,String> getIidToFolderMap() {
 		return iidToFolderMap;
 	}
 }
@@ -29,11 +29,13 @@ import java.io.Serializable;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 
+import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
-@Getter @ToString @EqualsAndHashCode 
+@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 //@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 public class FvdlDescription implements Serializable {
 	private static final long serialVersionUID = 1L;
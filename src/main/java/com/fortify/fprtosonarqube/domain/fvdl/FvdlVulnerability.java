@@ -34,11 +34,13 @@ import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 
+import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
-@Getter @ToString @EqualsAndHashCode 
+@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 @JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 public class FvdlVulnerability implements Serializable {
 	private static final long serialVersionUID = 1L;
@@ -46,7 +48,7 @@ public class FvdlVulnerability implements Serializable {
 	private InstanceInfo instanceInfo;
 	private AnalysisInfo analysisInfo;
 
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class ClassInfo implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -56,7 +58,7 @@ public class FvdlVulnerability implements Serializable {
 		private Float defaultSeverity;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class InstanceInfo implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -65,14 +67,14 @@ public class FvdlVulnerability implements Serializable {
 		private Float confidence;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class AnalysisInfo implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private Unified unified;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class Unified implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -80,21 +82,21 @@ public class FvdlVulnerability implements Serializable {
 		private Trace trace;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class Context implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private SourceLocation functionDeclarationSourceLocation;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class Trace implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private Primary primary;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class Primary implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -110,7 +112,7 @@ public class FvdlVulnerability implements Serializable {
 		}
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	@JsonNaming(PropertyNamingStrategy.UpperCamelCaseStrategy.class)
 	public static final class Entry implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -118,7 +120,7 @@ public class FvdlVulnerability implements Serializable {
 		private NodeRef nodeRef;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	public static final class Node implements Serializable {
 		private static final long serialVersionUID = 1L;
 		@JacksonXmlProperty(isAttribute=true) private String id;
@@ -126,13 +128,13 @@ public class FvdlVulnerability implements Serializable {
 		@JsonProperty("SourceLocation") private SourceLocation sourceLocation;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	public static final class NodeRef implements Serializable {
 		private static final long serialVersionUID = 1L;
 		@JacksonXmlProperty(isAttribute=true) private String id;
 	}
 	
-	@Getter @ToString @EqualsAndHashCode
+	@Getter @ToString @EqualsAndHashCode @NoArgsConstructor @AllArgsConstructor
 	public static final class SourceLocation implements Serializable {
 		private static final long serialVersionUID = 1L;
 		@JacksonXmlProperty(isAttribute=true) private String path;
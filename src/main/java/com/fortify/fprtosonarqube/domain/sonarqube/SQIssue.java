@@ -26,6 +26,7 @@ package com.fortify.fprtosonarqube.domain.sonarqube;
 
 import java.io.Serializable;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -36,6 +37,8 @@ import lombok.Data;
 @JsonInclude(Include.NON_NULL)
 public class SQIssue implements Serializable {
 	private static final long serialVersionUID = 1L;
+	/** Fortify instance id; not part of the SonarQube generic issue data format */
+	@JsonIgnore private String instanceId;
 	private String engineId;
 	private String ruleId;
 	private Location primaryLocation;
@@ -50,6 +53,8 @@ public class SQIssue implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private String message;
 		private String filePath;
+		/** File path as specified in the FVDL, relative to the source base path; not part of the SonarQube generic issue data format */
+		@JsonIgnore private String sourcePath;
 		private TextRange textRange;
 	}
 	
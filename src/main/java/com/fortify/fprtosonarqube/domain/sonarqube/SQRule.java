@@ -24,10 +24,12 @@
  ******************************************************************************/
 package com.fortify.fprtosonarqube.domain.sonarqube;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
-@Builder @Data
+@Builder @Data @NoArgsConstructor @AllArgsConstructor
 public class SQRule {
 	private String engineId;
 	private String ruleId;
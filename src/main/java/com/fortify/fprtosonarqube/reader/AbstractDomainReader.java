@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.reader;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.AnalysisInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.ClassInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.InstanceInfo;
+import com.fortify.util.xml.XmlStreamReaderHelper;
+
+/**
+ * Abstract base class for {@link DomainReader} implementations. This class 
+ * provides a staged {@link #readVulnerability(XMLStreamReader, Predicate)}
+ * implementation; ClassInfo and InstanceInfo are read first, and if the 
+ * instance id is not accepted by the given instance id filter, the remainder 
+ * of the Vulnerability element (including the potentially large AnalysisInfo 
+ * element) is skipped without building any objects. 
+ */
+public abstract class AbstractDomainReader implements DomainReader {
+	@Override
+	public final FvdlVulnerability readVulnerability(XMLStreamReader reader, Predicate<String> instanceIdFilter) throws IOException, XMLStreamException {
+		return readVulnerability(reader, instanceIdFilter, true);
+	}
+	
+	@Override
+	public final FvdlVulnerability readVulnerabilityInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readVulnerability(reader, instanceId->true, false);
+	}
+	
+	private FvdlVulnerability readVulnerability(XMLStreamReader reader, Predicate<String> instanceIdFilter, boolean readAnalysisInfo) throws IOException, XMLStreamException {
+		ClassInfo classInfo = null;
+		InstanceInfo instanceInfo = null;
+		AnalysisInfo analysisInfo = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			switch ( reader.getLocalName() ) {
+			case "ClassInfo": 
+				classInfo = readClassInfo(reader); 
+				break;
+			case "InstanceInfo": 
+				instanceInfo = readInstanceInfo(reader);
+				if ( !instanceIdFilter.test(instanceInfo.getInstanceID()) ) {
+					XmlStreamReaderHelper.skipRemainingContent(reader); // Skip remainder of Vulnerability element
+					return null;
+				}
+				break;
+			case "AnalysisInfo": 
+				if ( readAnalysisInfo ) {
+					analysisInfo = readAnalysisInfo(reader);
+				} else {
+					XmlStreamReaderHelper.skipElement(reader);
+				}
+				break;
+			default: 
+				XmlStreamReaderHelper.skipElement(reader);
+			}
+		}
+		return new FvdlVulnerability(classInfo, instanceInfo, analysisInfo);
+	}
+
+	protected abstract ClassInfo readClassInfo(XMLStreamReader reader) throws IOException, XMLStreamException;
+	protected abstract InstanceInfo readInstanceInfo(XMLStreamReader reader) throws IOException, XMLStreamException;
+	protected abstract AnalysisInfo readAnalysisInfo(XMLStreamReader reader) throws IOException, XMLStreamException;
+}
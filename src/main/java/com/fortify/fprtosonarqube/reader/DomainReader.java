@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.reader;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlDescription;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Node;
+import com.fortify.fprtosonarqube.domain.report.ReportIssue;
+
+/**
+ * Interface for reading domain objects from an {@link XMLStreamReader} that is 
+ * positioned at the START_ELEMENT of the element to be read. On return, the 
+ * reader will be positioned at the corresponding END_ELEMENT. 
+ * 
+ * The {@link #getDefault()} method returns the implementation configured through 
+ * the domainReader system property; either {@link JacksonDomainReader} (default) 
+ * or {@link StaxDomainReader} (-DdomainReader=stax).
+ */
+public interface DomainReader {
+	/**
+	 * Read an {@link FvdlVulnerability}, or return null if the instance id
+	 * is not accepted by the given instance id filter.
+	 */
+	FvdlVulnerability readVulnerability(XMLStreamReader reader, Predicate<String> instanceIdFilter) throws IOException, XMLStreamException;
+	/**
+	 * Read the ClassInfo and InstanceInfo of an {@link FvdlVulnerability}, 
+	 * skipping AnalysisInfo and any other elements.
+	 */
+	FvdlVulnerability readVulnerabilityInfo(XMLStreamReader reader) throws IOException, XMLStreamException;
+	Node readNode(XMLStreamReader reader) throws IOException, XMLStreamException;
+	FvdlDescription readDescription(XMLStreamReader reader) throws IOException, XMLStreamException;
+	ReportIssue readReportIssue(XMLStreamReader reader) throws IOException, XMLStreamException;
+	
+	public static DomainReader getDefault() {
+		return "stax".equalsIgnoreCase(System.getProperty("domainReader")) 
+				? StaxDomainReader.INSTANCE 
+				: JacksonDomainReader.INSTANCE;
+	}
+}
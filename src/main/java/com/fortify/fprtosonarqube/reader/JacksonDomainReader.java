@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.reader;
+
+import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlDescription;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.AnalysisInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.ClassInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.InstanceInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Node;
+import com.fortify.fprtosonarqube.domain.report.ReportIssue;
+import com.fortify.util.xml.XmlMapperHelper;
+
+/**
+ * {@link DomainReader} implementation that reads domain objects using 
+ * Jackson databinding.
+ */
+public class JacksonDomainReader extends AbstractDomainReader {
+	public static final JacksonDomainReader INSTANCE = new JacksonDomainReader();
+
+	@Override
+	public Node readNode(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, Node.class);
+	}
+
+	@Override
+	public FvdlDescription readDescription(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, FvdlDescription.class);
+	}
+
+	@Override
+	public ReportIssue readReportIssue(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, ReportIssue.class);
+	}
+
+	@Override
+	protected ClassInfo readClassInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, ClassInfo.class);
+	}
+
+	@Override
+	protected InstanceInfo readInstanceInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, InstanceInfo.class);
+	}
+
+	@Override
+	protected AnalysisInfo readAnalysisInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		return readValue(reader, AnalysisInfo.class);
+	}
+	
+	private <T> T readValue(XMLStreamReader reader, Class<T> type) throws IOException {
+		return XmlMapperHelper.getDefaultXmlMapper().readValue(reader, type);
+	}
+}
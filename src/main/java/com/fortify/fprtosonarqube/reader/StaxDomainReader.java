@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.reader;
+
+import static com.fortify.util.xml.XmlStreamReaderHelper.getIntegerAttribute;
+import static com.fortify.util.xml.XmlStreamReaderHelper.readFloat;
+import static com.fortify.util.xml.XmlStreamReaderHelper.skipElement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlDescription;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.AnalysisInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.ClassInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Entry;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.InstanceInfo;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Node;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.NodeRef;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Primary;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.SourceLocation;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Trace;
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.Unified;
+import com.fortify.fprtosonarqube.domain.report.ReportIssue;
+
+/**
+ * {@link DomainReader} implementation that reads domain objects using hand-written, 
+ * reflection-free StAX code. Only the attributes and elements that are bound by the 
+ * domain classes are read; all other elements are skipped without building any objects.
+ * For repeated elements that map to a single-valued property, the last element wins, 
+ * consistent with {@link JacksonDomainReader}.
+ */
+public class StaxDomainReader extends AbstractDomainReader {
+	public static final StaxDomainReader INSTANCE = new StaxDomainReader();
+
+	@Override
+	public Node readNode(XMLStreamReader reader) throws IOException, XMLStreamException {
+		String id = reader.getAttributeValue(null, "id");
+		boolean isDefault = "true".equals(reader.getAttributeValue(null, "isDefault"));
+		SourceLocation sourceLocation = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "SourceLocation".equals(reader.getLocalName()) ) {
+				sourceLocation = readSourceLocation(reader);
+			} else {
+				skipElement(reader);
+			}
+		}
+		return new Node(id, isDefault, sourceLocation);
+	}
+
+	@Override
+	public FvdlDescription readDescription(XMLStreamReader reader) throws IOException, XMLStreamException {
+		String classID = reader.getAttributeValue(null, "classID");
+		String explanation = null;
+		String recommendations = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			switch ( reader.getLocalName() ) {
+			case "Explanation": explanation = reader.getElementText(); break;
+			case "Recommendations": recommendations = reader.getElementText(); break;
+			default: skipElement(reader);
+			}
+		}
+		return new FvdlDescription(classID, explanation, recommendations);
+	}
+
+	@Override
+	public ReportIssue readReportIssue(XMLStreamReader reader) throws IOException, XMLStreamException {
+		ReportIssue issue = new ReportIssue();
+		issue.setIid(reader.getAttributeValue(null, "iid"));
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "Folder".equals(reader.getLocalName()) ) {
+				issue.setFolder(reader.getElementText());
+			} else {
+				skipElement(reader);
+			}
+		}
+		return issue;
+	}
+
+	@Override
+	protected ClassInfo readClassInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		String classID = null;
+		String type = null;
+		String subtype = null;
+		Float defaultSeverity = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			switch ( reader.getLocalName() ) {
+			case "ClassID": classID = reader.getElementText(); break;
+			case "Type": type = reader.getElementText(); break;
+			case "Subtype": subtype = reader.getElementText(); break;
+			case "DefaultSeverity": defaultSeverity = readFloat(reader); break;
+			default: skipElement(reader);
+			}
+		}
+		return new ClassInfo(classID, type, subtype, defaultSeverity);
+	}
+
+	@Override
+	protected InstanceInfo readInstanceInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		String instanceID = null;
+		Float instanceSeverity = null;
+		Float confidence = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			switch ( reader.getLocalName() ) {
+			case "InstanceID": instanceID = reader.getElementText(); break;
+			case "InstanceSeverity": instanceSeverity = readFloat(reader); break;
+			case "Confidence": confidence = readFloat(reader); break;
+			default: skipElement(reader);
+			}
+		}
+		return new InstanceInfo(instanceID, instanceSeverity, confidence);
+	}
+
+	@Override
+	protected AnalysisInfo readAnalysisInfo(XMLStreamReader reader) throws IOException, XMLStreamException {
+		Unified unified = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "Unified".equals(reader.getLocalName()) ) {
+				unified = readUnified(reader);
+			} else {
+				skipElement(reader);
+			}
+		}
+		return new AnalysisInfo(unified);
+	}
+	
+	private Unified readUnified(XMLStreamReader reader) throws IOException, XMLStreamException {
+		Trace trace = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "Trace".equals(reader.getLocalName()) ) {
+				trace = readTrace(reader);
+			} else {
+				skipElement(reader);
+			}
+		}
+		return new Unified(trace);
+	}
+	
+	private Trace readTrace(XMLStreamReader reader) throws IOException, XMLStreamException {
+		Primary primary = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "Primary".equals(reader.getLocalName()) ) {
+				primary = readPrimary(reader);
+			} else {
+				skipElement(reader);
+			}
+		}
+		return new Trace(primary);
+	}
+	
+	private Primary readPrimary(XMLStreamReader reader) throws IOException, XMLStreamException {
+		List<Entry> entries = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( "Entry".equals(reader.getLocalName()) ) {
+				if ( entries==null ) { entries = new ArrayList<>(); }
+				entries.add(readEntry(reader));
+			} else {
+				skipElement(reader);
+			}
+		}
+		return new Primary(entries);
+	}
+	
+	private Entry readEntry(XMLStreamReader reader) throws IOException, XMLStreamException {
+		Node node = null;
+		NodeRef nodeRef = null;
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			switch ( reader.getLocalName() ) {
+			case "Node": node = readNode(reader); break;
+			case "NodeRef": 
+				nodeRef = new NodeRef(reader.getAttributeValue(null, "id"));
+				skipElement(reader);
+				break;
+			default: skipElement(reader);
+			}
+		}
+		return new Entry(node, nodeRef);
+	}
+	
+	private SourceLocation readSourceLocation(XMLStreamReader reader) throws XMLStreamException {
+		SourceLocation sourceLocation = new SourceLocation(
+				reader.getAttributeValue(null, "path"), 
+				getIntegerAttribute(reader, "line"), 
+				getIntegerAttribute(reader, "lineEnd"), 
+				getIntegerAttribute(reader, "colStart"), 
+				getIntegerAttribute(reader, "colEnd"));
+		skipElement(reader);
+		return sourceLocation;
+	}
+}
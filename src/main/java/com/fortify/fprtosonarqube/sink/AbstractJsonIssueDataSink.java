@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Abstract base class for {@link IssueDataSink} implementations that write 
+ * to a {@link JsonGenerator}. Closing this sink closes the generator.
+ */
+public abstract class AbstractJsonIssueDataSink implements IssueDataSink, Closeable {
+	protected final JsonGenerator generator;
+	private final ObjectWriter writer = OutputFormat.createWriter();
+	
+	protected AbstractJsonIssueDataSink(JsonGenerator generator) {
+		this.generator = generator;
+	}
+	
+	/**
+	 * Write the given value using an {@link ObjectWriter} that is specific to this sink
+	 */
+	protected void writeValue(Object value) throws IOException {
+		writer.writeValue(generator, value);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		generator.close();
+	}
+}
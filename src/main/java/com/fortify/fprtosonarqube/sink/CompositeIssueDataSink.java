@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * {@link IssueDataSink} implementation that passes all issues and rules to each 
+ * of the given sinks, allowing multiple output formats to be generated from a 
+ * single conversion. Closing this sink closes all {@link Closeable} sinks. The
+ * given list is not copied, so sinks may be added until processing starts.
+ */
+public class CompositeIssueDataSink implements IssueDataSink, Closeable {
+	private final List<? extends IssueDataSink> sinks;
+	
+	public CompositeIssueDataSink(List<? extends IssueDataSink> sinks) {
+		this.sinks = sinks;
+	}
+
+	@Override
+	public void startIssues() throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.startIssues(); }
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.issue(issue); }
+	}
+
+	@Override
+	public void endIssues() throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.endIssues(); }
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.startRules(); }
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.rule(rule); }
+	}
+
+	@Override
+	public void endRules() throws IOException {
+		for ( IssueDataSink sink : sinks ) { sink.endRules(); }
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for ( IssueDataSink sink : sinks ) {
+			if ( sink instanceof Closeable ) {
+				try {
+					((Closeable)sink).close();
+				} catch ( IOException e ) {
+					if ( exception==null ) { exception = e; } else { exception.addSuppressed(e); }
+				}
+			}
+		}
+		if ( exception!=null ) { throw exception; }
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+import com.fortify.fprtosonarqube.util.IssueSnapshot;
+
+/**
+ * {@link IssueDataSink} implementation for incremental conversions. Every issue is 
+ * recorded in the given {@link IssueSnapshot.Builder} together with a hash of its 
+ * contents (rule, severity, type, and primary and secondary locations); locations are
+ * hashed by FVDL source path rather than absolute file path, so checking out the same 
+ * sources to a different directory doesn't change the hash. Only issues that are not 
+ * contained in the given previous {@link IssueSnapshot} with the same hash (i.e. issues
+ * that were added or changed, including folder changes) are passed to the given delegate. 
+ * If no previous snapshot is given, all issues and rules are passed to the delegate;
+ * otherwise, only rules referenced by any of the passed issues are passed.
+ */
+public class DiffIssueDataSink implements IssueDataSink {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private final IssueDataSink delegate;
+	private final IssueSnapshot previous;
+	private final IssueSnapshot.Builder current;
+	private final Set<String> referencedRuleIds = new HashSet<>();
+	
+	public DiffIssueDataSink(IssueDataSink delegate, IssueSnapshot previous, IssueSnapshot.Builder current) {
+		this.delegate = delegate;
+		this.previous = previous;
+		this.current = current;
+	}
+
+	@Override
+	public void startIssues() throws IOException {
+		delegate.startIssues();
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		long hash = getHash(issue);
+		current.add(issue.getInstanceId(), hash);
+		if ( previous==null || !previous.contains(issue.getInstanceId(), hash) ) {
+			referencedRuleIds.add(issue.getRuleId());
+			delegate.issue(issue);
+		}
+	}
+
+	@Override
+	public void endIssues() throws IOException {
+		delegate.endIssues();
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		delegate.startRules();
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		if ( previous==null || referencedRuleIds.contains(rule.getRuleId()) ) {
+			delegate.rule(rule);
+		}
+	}
+
+	@Override
+	public void endRules() throws IOException {
+		delegate.endRules();
+	}
+	
+	/**
+	 * Calculate a 64-bit FNV-1a hash over the issue properties that are written
+	 */
+	private static long getHash(SQIssue issue) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = hash(hash, issue.getRuleId());
+		hash = hash(hash, issue.getSeverity());
+		hash = hash(hash, issue.getType());
+		hash = hash(hash, issue.getPrimaryLocation());
+		if ( issue.getSecondaryLocations()!=null ) {
+			for ( Location location : issue.getSecondaryLocations() ) {
+				hash = hash(hash, location);
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Hash the given location; the FVDL source path is used rather than the absolute
+	 * file path if available, so moving the source base path doesn't change the hash
+	 */
+	private static long hash(long hash, Location location) {
+		if ( location!=null ) {
+			hash = hash(hash, location.getSourcePath()!=null ? location.getSourcePath() : location.getFilePath());
+			hash = hash(hash, location.getMessage());
+			TextRange textRange = location.getTextRange();
+			if ( textRange!=null ) {
+				hash = hash(hash, textRange.getStartLine());
+				hash = hash(hash, textRange.getEndLine());
+				hash = hash(hash, textRange.getStartColumn());
+				hash = hash(hash, textRange.getEndColumn());
+			}
+		}
+		return hash;
+	}
+	
+	private static long hash(long hash, String value) {
+		if ( value!=null ) {
+			for ( int i = 0 ; i < value.length() ; i++ ) {
+				hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+			}
+		}
+		return (hash ^ 0xFFFF) * FNV_PRIME; // Field separator
+	}
+	
+	private static long hash(long hash, Integer value) {
+		return hash(hash, value==null ? null : value.toString());
+	}
+}
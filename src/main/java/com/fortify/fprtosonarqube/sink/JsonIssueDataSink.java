@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * {@link IssueDataSink} implementation that writes issues and rules in the 
+ * SonarQube generic issue data format to the given {@link JsonGenerator}.
+ */
+public class JsonIssueDataSink extends AbstractJsonIssueDataSink {
+	public JsonIssueDataSink(JsonGenerator generator) {
+		super(generator);
+	}
+
+	@Override
+	public void startIssues() throws IOException {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("issues");
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		writeValue(issue);
+	}
+
+	@Override
+	public void endIssues() throws IOException {
+		generator.writeEndArray();
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		generator.writeArrayFieldStart("rules");
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		writeValue(rule);
+	}
+
+	@Override
+	public void endRules() throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Supported output formats, each with a default file extension and a factory 
+ * method for creating the corresponding {@link AbstractJsonIssueDataSink}. 
+ */
+public enum OutputFormat {
+	SONARQUBE(".json", JsonIssueDataSink::new), 
+	NDJSON(".ndjson", NdjsonIssueDataSink::new), 
+	SARIF(".sarif", SarifIssueDataSink::new);
+	
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+			.registerModule(new SimpleModule().addSerializer(new SQIssueSerializer()))
+			.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private final String extension;
+	private final Function<JsonGenerator, AbstractJsonIssueDataSink> sinkFactory;
+	
+	private OutputFormat(String extension, Function<JsonGenerator, AbstractJsonIssueDataSink> sinkFactory) {
+		this.extension = extension;
+		this.sinkFactory = sinkFactory;
+	}
+	
+	public String getExtension() {
+		return extension;
+	}
+	
+	/**
+	 * Create a sink that writes to the given {@link OutputStream}, either pretty-printed 
+	 * or compact. NDJSON output is always compact. Closing the sink closes the stream.
+	 */
+	public AbstractJsonIssueDataSink createSink(OutputStream outputStream, boolean compact) throws IOException {
+		JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+		generator.setCodec(OBJECT_MAPPER);
+		if ( this==NDJSON ) {
+			generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+		} else if ( !compact ) {
+			generator.setPrettyPrinter(new DefaultPrettyPrinter());
+		}
+		return sinkFactory.apply(generator);
+	}
+	
+	/**
+	 * Get an {@link ObjectWriter} for a single sink, sharing the serializers of the static
+	 * {@link ObjectMapper}, but with its own {@link SQIssueSerializer} value cache, so 
+	 * cached values don't outlive the conversion.
+	 */
+	static ObjectWriter createWriter() {
+		return OBJECT_MAPPER.writer().withAttribute(SQIssueSerializer.VALUE_CACHE, SQIssueSerializer.createValueCache());
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+
+/**
+ * Serializer for {@link SQIssue} that produces the same output as the default 
+ * bean serializer, but writes field names and frequently repeated values like 
+ * rule id's, messages and file paths as pre-encoded {@link SerializedString} 
+ * instances, avoiding repeated character escaping and UTF-8 encoding. Encoded 
+ * values are cached in the map passed as the {@link #VALUE_CACHE} attribute, for 
+ * example through {@link com.fasterxml.jackson.databind.ObjectWriter#withAttribute(Object, Object)},
+ * so the cache can be scoped to a single sink while the serializer itself is shared.
+ * Without this attribute, values are encoded without caching.
+ */
+public class SQIssueSerializer extends StdSerializer<SQIssue> {
+	private static final long serialVersionUID = 1L;
+	private static final int MAX_CACHED_VALUES = 1<<16;
+	/** Attribute key for the value cache, as created by {@link #createValueCache()} */
+	public static final Object VALUE_CACHE = SQIssueSerializer.class.getName()+".valueCache";
+	private static final SerializedString ENGINE_ID = new SerializedString("engineId");
+	private static final SerializedString RULE_ID = new SerializedString("ruleId");
+	private static final SerializedString PRIMARY_LOCATION = new SerializedString("primaryLocation");
+	private static final SerializedString TYPE = new SerializedString("type");
+	private static final SerializedString SEVERITY = new SerializedString("severity");
+	private static final SerializedString EFFORT_MINUTES = new SerializedString("effortMinutes");
+	private static final SerializedString SECONDARY_LOCATIONS = new SerializedString("secondaryLocations");
+	private static final SerializedString MESSAGE = new SerializedString("message");
+	private static final SerializedString FILE_PATH = new SerializedString("filePath");
+	private static final SerializedString TEXT_RANGE = new SerializedString("textRange");
+	private static final SerializedString START_LINE = new SerializedString("startLine");
+	private static final SerializedString END_LINE = new SerializedString("endLine");
+	private static final SerializedString START_COLUMN = new SerializedString("startColumn");
+	private static final SerializedString END_COLUMN = new SerializedString("endColumn");
+	
+	public SQIssueSerializer() {
+		super(SQIssue.class);
+	}
+	
+	/**
+	 * Create a value cache to be passed as the {@link #VALUE_CACHE} attribute; a 
+	 * value cache must only be used by a single thread at a time.
+	 */
+	public static Map<String, SerializedString> createValueCache() {
+		return new HashMap<>();
+	}
+
+	@Override
+	public void serialize(SQIssue issue, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		@SuppressWarnings("unchecked")
+		Map<String, SerializedString> values = (Map<String, SerializedString>)provider.getAttribute(VALUE_CACHE);
+		gen.writeStartObject();
+		writeString(gen, values, ENGINE_ID, issue.getEngineId());
+		writeString(gen, values, RULE_ID, issue.getRuleId());
+		if ( issue.getPrimaryLocation()!=null ) {
+			gen.writeFieldName(PRIMARY_LOCATION);
+			writeLocation(gen, values, issue.getPrimaryLocation());
+		}
+		writeString(gen, values, TYPE, issue.getType());
+		writeString(gen, values, SEVERITY, issue.getSeverity());
+		writeNumber(gen, EFFORT_MINUTES, issue.getEffortMinutes());
+		if ( issue.getSecondaryLocations()!=null ) {
+			gen.writeFieldName(SECONDARY_LOCATIONS);
+			gen.writeStartArray();
+			for ( Location location : issue.getSecondaryLocations() ) {
+				if ( location==null ) {
+					gen.writeNull();
+				} else {
+					writeLocation(gen, values, location);
+				}
+			}
+			gen.writeEndArray();
+		}
+		gen.writeEndObject();
+	}
+
+	private void writeLocation(JsonGenerator gen, Map<String, SerializedString> values, Location location) throws IOException {
+		gen.writeStartObject();
+		writeString(gen, values, MESSAGE, location.getMessage());
+		writeString(gen, values, FILE_PATH, location.getFilePath());
+		TextRange textRange = location.getTextRange();
+		if ( textRange!=null ) {
+			gen.writeFieldName(TEXT_RANGE);
+			gen.writeStartObject();
+			writeNumber(gen, START_LINE, textRange.getStartLine());
+			writeNumber(gen, END_LINE, textRange.getEndLine());
+			writeNumber(gen, START_COLUMN, textRange.getStartColumn());
+			writeNumber(gen, END_COLUMN, textRange.getEndColumn());
+			gen.writeEndObject();
+		}
+		gen.writeEndObject();
+	}
+	
+	private void writeString(JsonGenerator gen, Map<String, SerializedString> values, SerializableString name, String value) throws IOException {
+		if ( value!=null ) {
+			gen.writeFieldName(name);
+			gen.writeString(getSerializedString(values, value));
+		}
+	}
+	
+	private void writeNumber(JsonGenerator gen, SerializableString name, Integer value) throws IOException {
+		if ( value!=null ) {
+			gen.writeFieldName(name);
+			gen.writeNumber(value);
+		}
+	}
+	
+	private static SerializableString getSerializedString(Map<String, SerializedString> values, String value) {
+		SerializedString result = values==null ? null : values.get(value);
+		if ( result==null ) {
+			result = new SerializedString(value);
+			if ( values!=null && values.size()<MAX_CACHED_VALUES ) { values.put(value, result); }
+		}
+		return result;
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * {@link IssueDataSink} implementation that writes issues and rules as a SARIF 2.1.0 
+ * log with a single run. As rules are received after all issues, the run's results 
+ * property is written before the tool property. SonarQube severities are mapped to 
+ * SARIF levels, and 0-based columns are converted to 1-based columns.
+ */
+public class SarifIssueDataSink extends AbstractJsonIssueDataSink {
+	private static final String SCHEMA = "https://raw.githubusercontent.com/oasis-tcs/sarif-spec/master/Schemata/sarif-schema-2.1.0.json";
+	
+	public SarifIssueDataSink(JsonGenerator generator) {
+		super(generator);
+	}
+
+	@Override
+	public void startIssues() throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("$schema", SCHEMA);
+		generator.writeStringField("version", "2.1.0");
+		generator.writeArrayFieldStart("runs");
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("results");
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("ruleId", issue.getRuleId());
+		generator.writeStringField("level", getLevel(issue.getSeverity()));
+		Location location = issue.getPrimaryLocation();
+		generator.writeObjectFieldStart("message");
+		generator.writeStringField("text", location.getMessage());
+		generator.writeEndObject();
+		generator.writeArrayFieldStart("locations");
+		writeLocation(location);
+		generator.writeEndArray();
+		if ( issue.getSecondaryLocations()!=null ) {
+			generator.writeArrayFieldStart("relatedLocations");
+			for ( Location secondaryLocation : issue.getSecondaryLocations() ) {
+				writeLocation(secondaryLocation);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+	
+	private void writeLocation(Location location) throws IOException {
+		generator.writeStartObject();
+		generator.writeObjectFieldStart("physicalLocation");
+		generator.writeObjectFieldStart("artifactLocation");
+		generator.writeStringField("uri", Paths.get(location.getFilePath()).toUri().toString());
+		generator.writeEndObject();
+		writeRegion(location.getTextRange());
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	@Override
+	public void endIssues() throws IOException {
+		generator.writeEndArray();
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		generator.writeObjectFieldStart("tool");
+		generator.writeObjectFieldStart("driver");
+		generator.writeStringField("name", "Fortify");
+		generator.writeArrayFieldStart("rules");
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("id", rule.getRuleId());
+		generator.writeStringField("name", rule.getName());
+		generator.writeObjectFieldStart("fullDescription");
+		generator.writeStringField("text", rule.getDescription());
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	@Override
+	public void endRules() throws IOException {
+		generator.writeEndArray(); // rules
+		generator.writeEndObject(); // driver
+		generator.writeEndObject(); // tool
+		generator.writeEndObject(); // run
+		generator.writeEndArray(); // runs
+		generator.writeEndObject();
+	}
+	
+	private void writeRegion(TextRange textRange) throws IOException {
+		if ( textRange!=null ) {
+			generator.writeObjectFieldStart("region");
+			writeNumberField("startLine", textRange.getStartLine(), 0);
+			writeNumberField("startColumn", textRange.getStartColumn(), 1);
+			writeNumberField("endLine", textRange.getEndLine(), 0);
+			writeNumberField("endColumn", textRange.getEndColumn(), 1);
+			generator.writeEndObject();
+		}
+	}
+	
+	private void writeNumberField(String fieldName, Integer value, int offset) throws IOException {
+		if ( value!=null ) {
+			generator.writeNumberField(fieldName, value+offset);
+		}
+	}
+	
+	private static String getLevel(String severity) {
+		switch ( severity ) {
+		case "BLOCKER": case "CRITICAL": case "MAJOR": return "error";
+		case "MINOR": return "warning";
+		default: return "note";
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Mapping of file path prefixes to shard names, used by {@link ShardedIssueDataSink} 
+ * to route issues by the file path of their primary location. Absolute prefixes are
+ * matched against the start of the file path; relative prefixes are matched at any 
+ * directory boundary in the file path. Prefixes only match complete path segments; for
+ * example, prefix src/main matches src/main/A.java but not src/mainframe/A.java. If 
+ * multiple prefixes match, the longest prefix 
+ * wins; file paths not matching any prefix are mapped to {@link #DEFAULT_SHARD}. Path 
+ * separators are normalized to forward slashes before matching.
+ */
+public class ShardMap {
+	public static final String DEFAULT_SHARD = "default";
+	private static final Pattern SHARD_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+	private final Map<String, String> prefixToShard = new LinkedHashMap<>();
+	private final Set<String> shardNames = new LinkedHashSet<>();
+	private final Map<String, String> filePathToShard = new HashMap<>();
+	
+	/**
+	 * Create a shard map from the given map of path prefixes to shard names
+	 */
+	public ShardMap(Map<String, String> prefixToShard) {
+		for ( Map.Entry<String, String> entry : prefixToShard.entrySet() ) {
+			String shardName = entry.getValue();
+			if ( !SHARD_NAME_PATTERN.matcher(shardName).matches() ) {
+				throw new IllegalArgumentException("Invalid shard name '"+shardName+"'; shard names may only contain letters, digits, '_', '.' and '-'");
+			}
+			this.prefixToShard.put(normalize(entry.getKey()), shardName);
+			this.shardNames.add(shardName);
+		}
+	}
+	
+	/**
+	 * Load a shard map from the given file. Each non-empty line that doesn't start 
+	 * with '#' has the format &lt;shard&gt;=&lt;prefix&gt;[,&lt;prefix&gt;...]
+	 */
+	public static ShardMap load(Path file) throws IOException {
+		Map<String, String> prefixToShard = new LinkedHashMap<>();
+		for ( String line : Files.readAllLines(file, StandardCharsets.UTF_8) ) {
+			line = line.trim();
+			if ( line.isEmpty() || line.startsWith("#") ) { continue; }
+			int separator = line.indexOf('=');
+			if ( separator<=0 ) {
+				throw new IllegalArgumentException("Invalid line in shard map "+file+": "+line);
+			}
+			String shardName = line.substring(0, separator).trim();
+			for ( String prefix : line.substring(separator+1).split(",") ) {
+				if ( !prefix.trim().isEmpty() ) { prefixToShard.put(prefix.trim(), shardName); }
+			}
+		}
+		return new ShardMap(prefixToShard);
+	}
+	
+	/**
+	 * Get the names of all shards defined in this shard map, in definition order, 
+	 * not including {@link #DEFAULT_SHARD} unless explicitly mapped.
+	 */
+	public Set<String> getShardNames() {
+		return Collections.unmodifiableSet(shardNames);
+	}
+	
+	/**
+	 * Get the shard name for the given file path; results are cached per file path, 
+	 * so this method is not thread-safe. 
+	 */
+	public String getShard(String filePath) {
+		if ( filePath==null ) { return DEFAULT_SHARD; }
+		String result = filePathToShard.get(filePath);
+		if ( result==null ) {
+			result = findShard(normalize(filePath));
+			filePathToShard.put(filePath, result);
+		}
+		return result;
+	}
+
+	private String findShard(String filePath) {
+		String result = DEFAULT_SHARD;
+		int matchLength = -1;
+		for ( Map.Entry<String, String> entry : prefixToShard.entrySet() ) {
+			String prefix = entry.getKey();
+			if ( prefix.length()>matchLength && matches(filePath, prefix) ) {
+				result = entry.getValue();
+				matchLength = prefix.length();
+			}
+		}
+		return result;
+	}
+	
+	private static boolean matches(String filePath, String prefix) {
+		if ( filePath.startsWith(prefix) && isSegmentEnd(filePath, prefix.length()) ) { return true; }
+		if ( isAbsolute(prefix) ) { return false; }
+		String segmentPrefix = "/"+prefix;
+		for ( int index = filePath.indexOf(segmentPrefix) ; index>=0 ; index = filePath.indexOf(segmentPrefix, index+1) ) {
+			if ( isSegmentEnd(filePath, index+segmentPrefix.length()) ) { return true; }
+		}
+		return false;
+	}
+	
+	/**
+	 * Check whether a prefix match ending at the given index ends at a path segment boundary
+	 */
+	private static boolean isSegmentEnd(String filePath, int index) {
+		return index==filePath.length() || filePath.charAt(index)=='/' || filePath.charAt(index-1)=='/';
+	}
+	
+	private static boolean isAbsolute(String prefix) {
+		return prefix.startsWith("/") || (prefix.length()>2 && prefix.charAt(1)==':' && prefix.charAt(2)=='/');
+	}
+	
+	private static String normalize(String path) {
+		return path.replace('\\', '/');
+	}
+}
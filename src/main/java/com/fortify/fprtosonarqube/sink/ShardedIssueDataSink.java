@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * {@link IssueDataSink} implementation that routes each issue to a separate shard 
+ * sink, based on the file path of the issue's primary location as mapped by the 
+ * given {@link ShardMap}. Each shard sink is invoked on its own writer thread, at 
+ * most {@value #QUEUE_SIZE} calls behind the caller. Each shard only receives the 
+ * rules referenced by the issues in that shard. Sinks for the shards defined in 
+ * the {@link ShardMap} are always created, even if they don't receive any issues;
+ * the sink for the {@link ShardMap#DEFAULT_SHARD} is only created when needed.
+ */
+public class ShardedIssueDataSink implements IssueDataSink, Closeable {
+	private static final int QUEUE_SIZE = 1024;
+	private final ShardMap shardMap;
+	private final ShardSinkFactory sinkFactory;
+	private final Map<String, Shard> shards = new LinkedHashMap<>();
+	
+	@FunctionalInterface
+	public static interface ShardSinkFactory {
+		IssueDataSink createSink(String shardName) throws IOException;
+	}
+	
+	public ShardedIssueDataSink(ShardMap shardMap, ShardSinkFactory sinkFactory) {
+		this.shardMap = shardMap;
+		this.sinkFactory = sinkFactory;
+	}
+
+	@Override
+	public void startIssues() throws IOException {
+		for ( String shardName : shardMap.getShardNames() ) { getShard(shardName); }
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		Shard shard = getShard(shardMap.getShard(issue.getPrimaryLocation()==null ? null : issue.getPrimaryLocation().getFilePath()));
+		shard.ruleIds.add(issue.getRuleId());
+		shard.issueCount++;
+		shard.submit(sink->sink.issue(issue));
+	}
+
+	@Override
+	public void endIssues() throws IOException {
+		for ( Shard shard : shards.values() ) { shard.submit(IssueDataSink::endIssues); }
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		for ( Shard shard : shards.values() ) { shard.submit(IssueDataSink::startRules); }
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		for ( Shard shard : shards.values() ) {
+			if ( shard.ruleIds.contains(rule.getRuleId()) ) {
+				shard.ruleCount++;
+				shard.submit(sink->sink.rule(rule));
+			}
+		}
+	}
+
+	/**
+	 * End the rules for all shards, and wait until all shard writer threads have finished
+	 */
+	@Override
+	public void endRules() throws IOException {
+		for ( Shard shard : shards.values() ) { shard.submit(IssueDataSink::endRules); }
+		for ( Shard shard : shards.values() ) { shard.finish(); }
+	}
+	
+	/**
+	 * Get the manifest for all shards that have been written, listing shard name, 
+	 * number of issues and number of rules for each shard.
+	 */
+	public List<Map<String, Object>> getManifest() {
+		List<Map<String, Object>> result = new ArrayList<>();
+		for ( Shard shard : shards.values() ) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("shard", shard.name);
+			entry.put("issues", shard.issueCount);
+			entry.put("rules", shard.ruleCount);
+			result.add(entry);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for ( Shard shard : shards.values() ) {
+			shard.close();
+			if ( shard.sink instanceof Closeable ) {
+				try {
+					((Closeable)shard.sink).close();
+				} catch ( IOException e ) {
+					if ( exception==null ) { exception = e; } else { exception.addSuppressed(e); }
+				}
+			}
+		}
+		if ( exception!=null ) { throw exception; }
+	}
+	
+	private Shard getShard(String shardName) throws IOException {
+		Shard shard = shards.get(shardName);
+		if ( shard==null ) {
+			shard = new Shard(shardName, sinkFactory.createSink(shardName));
+			shards.put(shardName, shard);
+			shard.submit(IssueDataSink::startIssues);
+		}
+		return shard;
+	}
+	
+	@FunctionalInterface
+	private static interface SinkCall {
+		void apply(IssueDataSink sink) throws IOException;
+	}
+	
+	/**
+	 * Shard sink with its own writer thread, which applies the submitted 
+	 * {@link SinkCall}s in submission order. Once a call has failed, any
+	 * further calls are discarded, and the failure is rethrown to the caller
+	 * on the next submit or on {@link #finish()}.
+	 */
+	private static final class Shard {
+		private static final SinkCall END = sink->{};
+		private final String name;
+		private final IssueDataSink sink;
+		private final BlockingQueue<SinkCall> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		private final Thread writerThread;
+		private final Set<String> ruleIds = new HashSet<>();
+		private volatile Throwable failure = null;
+		private volatile boolean closed = false;
+		private int issueCount = 0;
+		private int ruleCount = 0;
+		
+		private Shard(String name, IssueDataSink sink) {
+			this.name = name;
+			this.sink = sink;
+			this.writerThread = new Thread(this::write, "FprToSonarQube-shard-"+name);
+			this.writerThread.setDaemon(true);
+			this.writerThread.start();
+		}
+		
+		private void submit(SinkCall call) throws IOException {
+			checkFailure();
+			try {
+				queue.put(call);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing shard "+name);
+			}
+		}
+		
+		/**
+		 * Wait until all submitted calls have been applied, and stop the writer thread
+		 */
+		private void finish() throws IOException {
+			submit(END);
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing shard "+name);
+			}
+			checkFailure();
+		}
+		
+		/**
+		 * Stop the writer thread without applying any pending calls, and wait until 
+		 * the writer thread has finished any call that it is currently applying, so 
+		 * the sink can safely be closed afterwards.
+		 */
+		private void close() {
+			closed = true;
+			queue.clear();
+			queue.offer(END);
+			writerThread.interrupt();
+			boolean interrupted = false;
+			while ( writerThread.isAlive() ) {
+				try {
+					writerThread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if ( interrupted ) { Thread.currentThread().interrupt(); }
+		}
+		
+		private void write() {
+			try {
+				SinkCall call;
+				while ( !closed && (call = queue.take())!=END ) {
+					if ( failure==null ) {
+						try {
+							call.apply(sink);
+						} catch ( Throwable t ) {
+							failure = t;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// Shard has been closed
+			}
+		}
+		
+		private void checkFailure() throws IOException {
+			Throwable t = failure;
+			if ( t instanceof IOException ) { throw (IOException)t; }
+			if ( t instanceof RuntimeException ) { throw (RuntimeException)t; }
+			if ( t instanceof Error ) { throw (Error)t; }
+			if ( t!=null ) { throw new IOException("Error writing shard "+name, t); }
+		}
+	}
+}
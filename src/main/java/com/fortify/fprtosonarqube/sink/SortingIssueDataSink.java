@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * {@link IssueDataSink} implementation that passes issues to the given delegate sink 
+ * sorted by file path, start line and rule id, and rules sorted by rule id, making
+ * the output independent of FVDL order. Issues are buffered in serialized form; 
+ * whenever the buffered issues exceed the given memory budget, they are sorted and 
+ * spilled to a temporary run file. Run files are merged in tiers: once a tier holds
+ * {@value #MERGE_FAN_IN} run files, these are merged into a single run file on the 
+ * next tier, so every issue is rewritten only a logarithmic number of times. At the 
+ * end of the issues, all remaining run files are k-way merged, so heap usage is 
+ * bounded by the memory budget regardless of the number of issues. Issues with 
+ * equal sort keys are ordered by their serialized contents, so the order is fully 
+ * deterministic.
+ */
+public class SortingIssueDataSink implements IssueDataSink, Closeable {
+	/** 
+	 * Estimated heap usage of a buffered record, in addition to the serialized issue:
+	 * Record object (32), byte array header (16), and buffer list slot including
+	 * growth slack (16). 
+	 */
+	private static final int RECORD_OVERHEAD = 64;
+	/** Estimated heap usage of a sort key string, excluding its characters */
+	private static final int STRING_OVERHEAD = 80;
+	/** Maximum number of run files being merged at once */
+	private static final int MERGE_FAN_IN = 64;
+	private static final Comparator<Record> RECORD_COMPARATOR = Comparator
+			.comparing((Record r)->r.filePath, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparingInt(r->r.startLine)
+			.thenComparing(r->r.ruleId, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparing(r->r.data, SortingIssueDataSink::compareBytes);
+	private final IssueDataSink delegate;
+	private final long memoryBudget;
+	private final List<Record> buffer = new ArrayList<>();
+	private final Map<String, String> keyStrings = new HashMap<>();
+	/** Run files per merge tier; all run files on a tier have a similar size */
+	private final List<List<File>> tiers = new ArrayList<>();
+	/** All existing run files, for cleanup */
+	private final Set<File> runFiles = new HashSet<>();
+	private final List<SQRule> rules = new ArrayList<>();
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	private long bufferSize = 0;
+	
+	/**
+	 * Create a sorting sink that passes sorted issues and rules to the given
+	 * delegate, buffering at most approximately the given number of bytes of 
+	 * issue data on the heap.
+	 */
+	public SortingIssueDataSink(IssueDataSink delegate, long memoryBudget) {
+		this.delegate = delegate;
+		this.memoryBudget = memoryBudget;
+	}
+	
+	@Override
+	public void startIssues() throws IOException {
+		delegate.startIssues();
+	}
+
+	@Override
+	public void issue(SQIssue issue) throws IOException {
+		bytes.reset();
+		writeIssue(out, issue);
+		Record record = new Record(issue, bytes.toByteArray(), false);
+		record.filePath = getKeyString(record.filePath);
+		record.ruleId = getKeyString(record.ruleId);
+		buffer.add(record);
+		bufferSize += record.data.length+RECORD_OVERHEAD;
+		if ( bufferSize>memoryBudget ) {
+			spill();
+		}
+	}
+
+	/**
+	 * Pass all buffered and spilled issues to the delegate sink in sorted order
+	 */
+	@Override
+	public void endIssues() throws IOException {
+		if ( runFiles.isEmpty() ) {
+			buffer.sort(RECORD_COMPARATOR);
+			for ( Record record : buffer ) {
+				delegate.issue(readIssue(new DataInputStream(new ByteArrayInputStream(record.data))));
+			}
+			clearBuffer();
+		} else {
+			if ( !buffer.isEmpty() ) { spill(); }
+			// Merge remaining runs, starting with the smallest, until they can be merged at once
+			List<File> remaining = new ArrayList<>();
+			for ( List<File> tier : tiers ) { remaining.addAll(tier); }
+			tiers.clear();
+			while ( remaining.size()>MERGE_FAN_IN ) {
+				List<File> merged = new ArrayList<>(remaining.subList(0, MERGE_FAN_IN));
+				remaining.subList(0, MERGE_FAN_IN).clear();
+				remaining.add(mergeToRunFile(merged));
+			}
+			merge(remaining, record->delegate.issue(record.issue));
+		}
+		delegate.endIssues();
+	}
+
+	@Override
+	public void startRules() throws IOException {
+		rules.clear();
+	}
+
+	@Override
+	public void rule(SQRule rule) throws IOException {
+		rules.add(rule);
+	}
+
+	@Override
+	public void endRules() throws IOException {
+		rules.sort(Comparator.comparing(SQRule::getRuleId, Comparator.nullsFirst(Comparator.naturalOrder())));
+		delegate.startRules();
+		for ( SQRule rule : rules ) { delegate.rule(rule); }
+		delegate.endRules();
+		rules.clear();
+	}
+	
+	/**
+	 * Delete any remaining run files; the delegate sink is not closed
+	 */
+	@Override
+	public void close() throws IOException {
+		for ( File runFile : runFiles ) { runFile.delete(); }
+		runFiles.clear();
+		tiers.clear();
+		clearBuffer();
+	}
+	
+	/**
+	 * Sort the buffered records and write them to a new run file on the first tier
+	 */
+	private void spill() throws IOException {
+		buffer.sort(RECORD_COMPARATOR);
+		File runFile = createRunFile();
+		try ( DataOutputStream runOut = openRunFile(runFile) ) {
+			for ( Record record : buffer ) { writeRecord(runOut, record); }
+		}
+		clearBuffer();
+		addRunFile(0, runFile);
+	}
+	
+	/**
+	 * Add the given run file to the given tier. If the tier then holds {@value #MERGE_FAN_IN}
+	 * run files, these are merged into a single run file on the next tier.
+	 */
+	private void addRunFile(int tierIndex, File runFile) throws IOException {
+		while ( tiers.size()<=tierIndex ) { tiers.add(new ArrayList<>()); }
+		List<File> tier = tiers.get(tierIndex);
+		tier.add(runFile);
+		if ( tier.size()>=MERGE_FAN_IN ) {
+			List<File> merged = new ArrayList<>(tier);
+			tier.clear();
+			addRunFile(tierIndex+1, mergeToRunFile(merged));
+		}
+	}
+	
+	private File mergeToRunFile(List<File> mergedRunFiles) throws IOException {
+		File runFile = createRunFile();
+		try ( DataOutputStream runOut = openRunFile(runFile) ) {
+			merge(mergedRunFiles, record->writeRecord(runOut, record));
+		}
+		return runFile;
+	}
+	
+	private File createRunFile() throws IOException {
+		File runFile = File.createTempFile("FortifyIssueSort", ".bin");
+		runFile.deleteOnExit();
+		runFiles.add(runFile);
+		return runFile;
+	}
+	
+	private static DataOutputStream openRunFile(File runFile) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 64*1024));
+	}
+	
+	/**
+	 * Get the shared instance of the given sort key string, accounting for 
+	 * the memory used by every distinct string in the buffer size.
+	 */
+	private String getKeyString(String value) {
+		if ( value==null ) { return null; }
+		String result = keyStrings.putIfAbsent(value, value);
+		if ( result==null ) {
+			bufferSize += STRING_OVERHEAD+2*value.length();
+			result = value;
+		}
+		return result;
+	}
+	
+	private void clearBuffer() {
+		buffer.clear();
+		keyStrings.clear();
+		bufferSize = 0;
+	}
+	
+	private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+		out.writeInt(record.data.length);
+		out.write(record.data);
+	}
+	
+	/**
+	 * Merge the given run files, passing all records in sorted order to the given 
+	 * {@link RecordHandler}, and delete the run files.
+	 */
+	private void merge(List<File> mergedRunFiles, RecordHandler handler) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<>(mergedRunFiles.size(), Comparator.comparing((Run run)->run.current, RECORD_COMPARATOR));
+		try {
+			for ( File runFile : mergedRunFiles ) {
+				Run run = new Run(runFile);
+				if ( run.next() ) { queue.add(run); } else { run.close(); }
+			}
+			Run run;
+			while ( (run = queue.poll())!=null ) {
+				handler.handle(run.current);
+				if ( run.next() ) { queue.add(run); } else { run.close(); }
+			}
+		} finally {
+			for ( Run run : queue ) { run.close(); }
+			for ( File runFile : mergedRunFiles ) { 
+				runFile.delete();
+				runFiles.remove(runFile);
+			}
+		}
+	}
+
+	
+	private static void writeIssue(DataOutputStream out, SQIssue issue) throws IOException {
+		writeString(out, issue.getInstanceId());
+		writeString(out, issue.getEngineId());
+		writeString(out, issue.getRuleId());
+		writeLocation(out, issue.getPrimaryLocation());
+		writeString(out, issue.getType());
+		writeString(out, issue.getSeverity());
+		writeInteger(out, issue.getEffortMinutes());
+		Location[] secondaryLocations = issue.getSecondaryLocations();
+		out.writeInt(secondaryLocations==null ? -1 : secondaryLocations.length);
+		if ( secondaryLocations!=null ) {
+			for ( Location location : secondaryLocations ) { writeLocation(out, location); }
+		}
+	}
+	
+	private static SQIssue readIssue(DataInputStream in) throws IOException {
+		SQIssue.SQIssueBuilder builder = SQIssue.builder()
+			.instanceId(readString(in))
+			.engineId(readString(in))
+			.ruleId(readString(in))
+			.primaryLocation(readLocation(in))
+			.type(readString(in))
+			.severity(readString(in))
+			.effortMinutes(readInteger(in));
+		int secondaryLocationCount = in.readInt();
+		if ( secondaryLocationCount>=0 ) {
+			Location[] secondaryLocations = new Location[secondaryLocationCount];
+			for ( int i = 0 ; i < secondaryLocationCount ; i++ ) { secondaryLocations[i] = readLocation(in); }
+			builder.secondaryLocations(secondaryLocations);
+		}
+		return builder.build();
+	}
+	
+	private static void writeLocation(DataOutputStream out, Location location) throws IOException {
+		out.writeBoolean(location!=null);
+		if ( location!=null ) {
+			writeString(out, location.getMessage());
+			writeString(out, location.getFilePath());
+			writeString(out, location.getSourcePath());
+			TextRange textRange = location.getTextRange();
+			out.writeBoolean(textRange!=null);
+			if ( textRange!=null ) {
+				writeInteger(out, textRange.getStartLine());
+				writeInteger(out, textRange.getEndLine());
+				writeInteger(out, textRange.getStartColumn());
+				writeInteger(out, textRange.getEndColumn());
+			}
+		}
+	}
+	
+	private static Location readLocation(DataInputStream in) throws IOException {
+		if ( !in.readBoolean() ) { return null; }
+		Location.LocationBuilder builder = Location.builder()
+			.message(readString(in))
+			.filePath(readString(in))
+			.sourcePath(readString(in));
+		if ( in.readBoolean() ) {
+			builder.textRange(TextRange.builder()
+				.startLine(readInteger(in))
+				.endLine(readInteger(in))
+				.startColumn(readInteger(in))
+				.endColumn(readInteger(in))
+				.build());
+		}
+		return builder.build();
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if ( value==null ) {
+			out.writeInt(-1);
+		} else {
+			byte[] data = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(data.length);
+			out.write(data);
+		}
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if ( length<0 ) { return null; }
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+	
+	private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+		out.writeBoolean(value!=null);
+		if ( value!=null ) { out.writeInt(value); }
+	}
+	
+	private static Integer readInteger(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+	
+	private static int compareBytes(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for ( int i = 0 ; i < length ; i++ ) {
+			int result = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+			if ( result!=0 ) { return result; }
+		}
+		return Integer.compare(a.length, b.length);
+	}
+	
+	@FunctionalInterface
+	private static interface RecordHandler {
+		void handle(Record record) throws IOException;
+	}
+	
+	/**
+	 * Serialized issue, together with the fields used for sorting; the issue itself 
+	 * is only retained while merging. While buffered, the sort key strings are shared
+	 * between records through {@link SortingIssueDataSink#getKeyString(String)}.
+	 */
+	private static final class Record {
+		private String filePath;
+		private final int startLine;
+		private String ruleId;
+		private final byte[] data;
+		private final SQIssue issue;
+		
+		private Record(SQIssue issue, byte[] data, boolean retainIssue) {
+			Location location = issue.getPrimaryLocation();
+			TextRange textRange = location==null ? null : location.getTextRange();
+			this.filePath = location==null ? null : location.getFilePath();
+			this.startLine = textRange==null || textRange.getStartLine()==null ? -1 : textRange.getStartLine();
+			this.ruleId = issue.getRuleId();
+			this.data = data;
+			this.issue = retainIssue ? issue : null;
+		}
+	}
+	
+	/**
+	 * Reader for a single run file, holding the current record of that run
+	 */
+	private static final class Run implements Closeable {
+		private final DataInputStream in;
+		private Record current;
+		
+		private Run(File file) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64*1024));
+		}
+		
+		/**
+		 * Read the next record, returning false if the end of the run has been reached
+		 */
+		private boolean next() throws IOException {
+			int length;
+			try {
+				length = in.readInt();
+			} catch ( EOFException e ) {
+				current = null;
+				return false;
+			}
+			byte[] data = new byte[length];
+			in.readFully(data);
+			current = new Record(readIssue(new DataInputStream(new ByteArrayInputStream(data))), data, true);
+			return true;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.fprtosonarqube.util.RunMetrics.Counter;
+import com.fortify.util.concurrent.ParallelPipeline.Worker;
+import com.fortify.util.concurrent.ParallelPipeline.Writer;
+
+/**
+ * Parser for the Vulnerabilities section of an {@link FvdlScratchFile} that splits 
+ * the section into chunks aligned to Vulnerability element boundaries, and parses 
+ * each chunk with its own {@link StreamingFvdlParser} on a {@link ForkJoinPool}. 
+ * Like {@link VulnerabilitiesHandler}, each Vulnerability element that is accepted 
+ * by the given instance id filter is read using the given {@link DomainReader} and 
+ * mapped using the given mapper. Non-null mapping results are passed to the given 
+ * writer from the calling thread, in document order. 
+ * 
+ * To bound memory usage, chunks are about {@value #TARGET_CHUNK_SIZE} bytes, and 
+ * at most twice as many chunks as there are threads are being parsed or waiting 
+ * to be written at any time. 
+ */
+public class ChunkedVulnerabilitiesParser<R> {
+	private static final long TARGET_CHUNK_SIZE = 8*1024*1024;
+	private final DomainReader domainReader;
+	private final Predicate<String> instanceIdFilter;
+	private final Worker<FvdlVulnerability, R> mapper;
+	private final Writer<R> writer;
+	private final RunMetrics metrics;
+	
+	public ChunkedVulnerabilitiesParser(DomainReader domainReader, Predicate<String> instanceIdFilter, Worker<FvdlVulnerability, R> mapper, Writer<R> writer, RunMetrics metrics) {
+		this.domainReader = domainReader;
+		this.instanceIdFilter = instanceIdFilter;
+		this.mapper = mapper;
+		this.writer = writer;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Parse the Vulnerabilities section of the given {@link FvdlScratchFile} using the
+	 * given number of threads. All results have been written when this method returns.
+	 */
+	public void parse(FvdlScratchFile scratchFile, int threads) throws IOException, XMLStreamException {
+		long size = Math.max(0, scratchFile.getSectionEnd(FvdlScratchFile.Section.VULNERABILITIES)-scratchFile.getOffset(FvdlScratchFile.Section.VULNERABILITIES));
+		int maxChunks = (int)Math.max(threads, Math.min(Integer.MAX_VALUE, size/TARGET_CHUNK_SIZE));
+		Iterator<long[]> chunks = scratchFile.getVulnerabilityChunks(maxChunks).iterator();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Queue<Future<List<R>>> inFlight = new ArrayDeque<>();
+		try {
+			while ( chunks.hasNext() || !inFlight.isEmpty() ) {
+				while ( chunks.hasNext() && inFlight.size()<threads*2 ) {
+					long[] chunk = chunks.next();
+					inFlight.add(pool.submit(()->parseChunk(scratchFile, chunk)));
+				}
+				for ( R result : getResults(inFlight.remove()) ) {
+					writer.write(result);
+				}
+			}
+		} finally {
+			for ( Future<List<R>> future : inFlight ) { future.cancel(true); }
+			pool.shutdownNow();
+		}
+	}
+	
+	private List<R> parseChunk(FvdlScratchFile scratchFile, long[] chunk) throws IOException, XMLStreamException {
+		List<R> results = new ArrayList<>();
+		StreamingFvdlParser parser = new StreamingFvdlParser()
+			.handler("Vulnerabilities/Vulnerability", reader->{
+				FvdlVulnerability vuln = domainReader.readVulnerability(reader, instanceIdFilter);
+				R result = vuln==null ? null : mapper.process(vuln);
+				if ( result!=null ) { results.add(result); }
+			});
+		try (InputStream inputStream = scratchFile.getVulnerabilitiesInputStream(chunk)) {
+			parser.parse(inputStream);
+		} finally {
+			metrics.add(Counter.ELEMENTS_SCANNED, parser.getElementCount());
+		}
+		return results;
+	}
+	
+	private static <R> List<R> getResults(Future<List<R>> future) throws IOException, XMLStreamException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing vulnerabilities");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof IOException ) { throw (IOException)cause; }
+			if ( cause instanceof XMLStreamException ) { throw (XMLStreamException)cause; }
+			if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+			if ( cause instanceof Error ) { throw (Error)cause; }
+			throw new IOException("Error parsing vulnerabilities", cause);
+		}
+	}
+}
@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * This class inflates audit.fvdl from an FPR file once into a temporary scratch 
+ * file, recording the byte offsets of the top-level FVDL {@link Section}s while 
+ * doing so. The {@link #getInputStream(Section, Section)} method can then be used 
+ * to read only a specific range of sections through a memory-mapped view of the 
+ * scratch file, without having to inflate and parse any of the preceding sections.
+ */
+public class FvdlScratchFile implements Closeable {
+	private static final byte[] ROOT_START = "<FVDL>".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] ROOT_END = "</FVDL>".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] CHUNK_START = "<FVDL><Vulnerabilities>".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] CHUNK_END = "</Vulnerabilities></FVDL>".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] START_TAG_END = ">".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] VULNERABILITY_START = "<Vulnerability".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] VULNERABILITIES_END = "</Vulnerabilities".getBytes(StandardCharsets.UTF_8);
+	private static final int MAX_MAPPED_REGION_SIZE = 256*1024*1024;
+	private static final int SEARCH_BUFFER_SIZE = 64*1024;
+	private final File file;
+	private final FileChannel channel;
+	private final Map<Section, Long> sectionOffsets = new EnumMap<>(Section.class);
+	
+	/**
+	 * Top-level sections in audit.fvdl, in document order
+	 */
+	public static enum Section {
+		BUILD("Build"), VULNERABILITIES("Vulnerabilities"), CONTEXT_POOL("ContextPool"), 
+		UNIFIED_NODE_POOL("UnifiedNodePool"), DESCRIPTION("Description"), SNIPPETS("Snippets"), 
+		PROGRAM_DATA("ProgramData"), ENGINE_DATA("EngineData");
+		
+		private final byte[] startTag;
+		private Section(String elementName) {
+			this.startTag = ("<"+elementName).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+	
+	public FvdlScratchFile(String fprFileName) throws IOException {
+		try (ZipFile zipFile = new ZipFile(fprFileName)) {
+			ZipEntry zipEntry = zipFile.getEntry("audit.fvdl");
+			if ( zipEntry==null ) {
+				throw new FileNotFoundException("audit.fvdl not found in "+fprFileName);
+			}
+			this.file = File.createTempFile("FortifyFvdl", ".fvdl");
+			this.file.deleteOnExit();
+			try (InputStream inputStream = zipFile.getInputStream(zipEntry);
+				 OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+				extract(inputStream, outputStream);
+			} catch ( IOException | RuntimeException e ) {
+				file.delete();
+				throw e;
+			}
+		}
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+	}
+	
+	/**
+	 * Get the size of the inflated audit.fvdl contents
+	 */
+	public long getSize() {
+		return file.length();
+	}
+	
+	/**
+	 * Get the byte offset of the given section in the scratch file, 
+	 * or -1 if the section is not present.
+	 */
+	public long getOffset(Section section) {
+		return sectionOffsets.getOrDefault(section, -1L);
+	}
+	
+	/**
+	 * Get an {@link InputStream} for reading the given range of sections. The returned 
+	 * {@link InputStream} provides a well-formed XML document that contains the requested
+	 * sections (and any sections between them) wrapped in an FVDL root element, so paths 
+	 * relative to the root element are the same as when parsing the full audit.fvdl.
+	 */
+	public InputStream getInputStream(Section first, Section last) throws IOException {
+		long start = -1;
+		for ( int i = first.ordinal() ; start<0 && i <= last.ordinal() ; i++ ) {
+			start = getOffset(Section.values()[i]);
+		}
+		long end = -1;
+		for ( int i = last.ordinal()+1 ; end<0 && i < Section.values().length ; i++ ) {
+			end = getOffset(Section.values()[i]);
+		}
+		if ( start<0 ) {
+			return concat(ROOT_START, ROOT_END);
+		} else if ( end<0 ) {
+			// Sections extend to end of file, which already contains the closing root tag
+			return new SequenceInputStream(new ByteArrayInputStream(ROOT_START), new MappedInputStream(channel, start, channel.size()));
+		} else {
+			return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+					new ByteArrayInputStream(ROOT_START), 
+					new MappedInputStream(channel, start, end), 
+					new ByteArrayInputStream(ROOT_END))));
+		}
+	}
+	
+	/**
+	 * Get the offset of the first section following the given section, 
+	 * or the file size if there is no such section.
+	 */
+	public long getSectionEnd(Section section) throws IOException {
+		for ( int i = section.ordinal()+1 ; i < Section.values().length ; i++ ) {
+			long offset = getOffset(Section.values()[i]);
+			if ( offset>=0 ) { return offset; }
+		}
+		return channel.size();
+	}
+	
+	/**
+	 * Split the contents of the Vulnerabilities section into at most the given number 
+	 * of byte ranges of roughly equal size. Every range other than the first starts at a 
+	 * Vulnerability start tag, so each range contains only complete Vulnerability elements 
+	 * (assuming that, as in FVDL files produced by Fortify, no CDATA sections or comments 
+	 * contain a literal Vulnerability start tag). Each range is represented as a 
+	 * {start, end} array; ranges can be read using {@link #getVulnerabilitiesInputStream(long[])}.
+	 */
+	public List<long[]> getVulnerabilityChunks(int maxChunks) throws IOException {
+		List<long[]> result = new ArrayList<>();
+		long sectionStart = getOffset(Section.VULNERABILITIES);
+		if ( sectionStart<0 ) { return result; }
+		long sectionEnd = getSectionEnd(Section.VULNERABILITIES);
+		long bodyStart = find(START_TAG_END, sectionStart, sectionEnd)+1;
+		long bodyEnd = findLast(VULNERABILITIES_END, sectionStart, sectionEnd);
+		if ( bodyStart<=0 || bodyEnd<bodyStart ) { return result; } // Empty <Vulnerabilities/> element
+		long chunkStart = bodyStart;
+		for ( int i = 1 ; i < maxChunks && chunkStart<bodyEnd ; i++ ) {
+			long chunkEnd = findVulnerabilityStart(Math.max(bodyStart+(bodyEnd-bodyStart)*i/maxChunks, chunkStart+1), bodyEnd);
+			if ( chunkEnd>chunkStart && chunkEnd<bodyEnd ) {
+				result.add(new long[] {chunkStart, chunkEnd});
+				chunkStart = chunkEnd;
+			}
+		}
+		result.add(new long[] {chunkStart, bodyEnd});
+		return result;
+	}
+	
+	/**
+	 * Get an {@link InputStream} for reading the given range returned by {@link #getVulnerabilityChunks(int)},
+	 * wrapped in FVDL and Vulnerabilities elements so paths are the same as when parsing the full audit.fvdl. 
+	 */
+	public InputStream getVulnerabilitiesInputStream(long[] chunk) throws IOException {
+		return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+				new ByteArrayInputStream(CHUNK_START), 
+				new MappedInputStream(channel, chunk[0], chunk[1]), 
+				new ByteArrayInputStream(CHUNK_END))));
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		file.delete();
+	}
+
+	/**
+	 * Copy the given {@link InputStream} to the given {@link OutputStream}, 
+	 * recording the offset of the first start tag of each {@link Section}.
+	 */
+	private void extract(InputStream inputStream, OutputStream outputStream) throws IOException {
+		Section[] sections = Section.values();
+		byte[] buffer = new byte[64*1024];
+		byte[] tag = new byte[32];
+		int tagLength = -1; // -1 means we're not currently reading a tag name
+		long offset = 0;
+		int read;
+		while ( (read=inputStream.read(buffer))>0 ) {
+			outputStream.write(buffer, 0, read);
+			for ( int i = 0 ; i < read ; i++, offset++ ) {
+				byte b = buffer[i];
+				if ( b=='<' ) {
+					tag[0] = b;
+					tagLength = 1;
+				} else if ( tagLength>0 ) {
+					if ( b==' ' || b=='>' || b=='/' || b=='\t' || b=='\r' || b=='\n' ) {
+						for ( Section section : sections ) {
+							if ( !sectionOffsets.containsKey(section) && isTag(tag, tagLength, section.startTag) ) {
+								sectionOffsets.put(section, offset-tagLength);
+							}
+						}
+						tagLength = -1;
+					} else if ( tagLength<tag.length ) {
+						tag[tagLength++] = b;
+					} else {
+						tagLength = -1;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find the offset of the first Vulnerability start tag at or after the given
+	 * offset, or return the given limit if there is no such start tag.
+	 */
+	private long findVulnerabilityStart(long from, long limit) throws IOException {
+		for ( long offset = find(VULNERABILITY_START, from, limit) ; offset>=0 ; offset = find(VULNERABILITY_START, offset+1, limit) ) {
+			int next = readByte(offset+VULNERABILITY_START.length);
+			if ( next=='>' || next==' ' || next=='\t' || next=='\r' || next=='\n' ) { return offset; }
+		}
+		return limit;
+	}
+	
+	/**
+	 * Find the offset of the first occurrence of the given bytes in the given 
+	 * range, or -1 if not found.
+	 */
+	private long find(byte[] bytes, long from, long limit) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+		for ( long position = from ; position<limit ; position += buffer.capacity()-bytes.length ) {
+			buffer.clear().limit((int)Math.min(buffer.capacity(), limit-position));
+			readFully(buffer, position);
+			for ( int i = 0 ; i+bytes.length <= buffer.position() ; i++ ) {
+				if ( matches(buffer, i, bytes) ) { return position+i; }
+			}
+			if ( position+buffer.position()>=limit ) { break; }
+		}
+		return -1;
+	}
+	
+	/**
+	 * Find the offset of the last occurrence of the given bytes in the given 
+	 * range, or -1 if not found.
+	 */
+	private long findLast(byte[] bytes, long from, long limit) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+		for ( long end = limit ; end>from ; end -= buffer.capacity()-bytes.length ) {
+			long position = Math.max(from, end-buffer.capacity());
+			buffer.clear().limit((int)(end-position));
+			readFully(buffer, position);
+			for ( int i = buffer.position()-bytes.length ; i >= 0 ; i-- ) {
+				if ( matches(buffer, i, bytes) ) { return position+i; }
+			}
+			if ( position==from ) { break; }
+		}
+		return -1;
+	}
+	
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while ( buffer.hasRemaining() && channel.read(buffer, position+buffer.position())>0 ) {}
+	}
+	
+	private int readByte(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		return channel.read(buffer, position)==1 ? buffer.get(0) : -1;
+	}
+	
+	private static boolean matches(ByteBuffer buffer, int index, byte[] bytes) {
+		for ( int j = 0 ; j < bytes.length ; j++ ) {
+			if ( buffer.get(index+j)!=bytes[j] ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final boolean isTag(byte[] tag, int tagLength, byte[] startTag) {
+		if ( tagLength!=startTag.length ) { return false; }
+		for ( int i = 1 ; i < tagLength ; i++ ) {
+			if ( tag[i]!=startTag[i] ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final InputStream concat(byte[] first, byte[] second) {
+		return new SequenceInputStream(new ByteArrayInputStream(first), new ByteArrayInputStream(second));
+	}
+	
+	/**
+	 * {@link InputStream} implementation for reading a range of bytes from a 
+	 * {@link FileChannel}, mapping at most {@value #MAX_MAPPED_REGION_SIZE} 
+	 * bytes into memory at a time.
+	 */
+	private static final class MappedInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long end;
+		private long regionStart;
+		private ByteBuffer region;
+		
+		public MappedInputStream(FileChannel channel, long start, long end) throws IOException {
+			this.channel = channel;
+			this.end = end;
+			this.regionStart = start;
+			this.region = map(start);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			return nextRegionIfNecessary() ? region.get() & 0xFF : -1;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( len==0 ) { return 0; }
+			if ( !nextRegionIfNecessary() ) { return -1; }
+			int count = Math.min(len, region.remaining());
+			region.get(b, off, count);
+			return count;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return region.remaining();
+		}
+		
+		private boolean nextRegionIfNecessary() throws IOException {
+			if ( !region.hasRemaining() && regionStart+region.capacity()<end ) {
+				regionStart += region.capacity();
+				region = map(regionStart);
+			}
+			return region.hasRemaining();
+		}
+		
+		private MappedByteBuffer map(long start) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_MAPPED_REGION_SIZE, end-start));
+		}
+	}
+}
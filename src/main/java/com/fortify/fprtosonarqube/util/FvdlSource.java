@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import com.fortify.fprtosonarqube.util.FvdlScratchFile.Section;
+import com.fortify.fprtosonarqube.util.RunMetrics.Counter;
+import com.fortify.fprtosonarqube.util.RunMetrics.Phase;
+import com.fortify.util.xml.AbstractStreamingXmlParser;
+
+/**
+ * This class provides access to the contents of an FPR file. If the extractFvdl 
+ * system property is set to true, audit.fvdl is extracted to an {@link FvdlScratchFile}
+ * on first access, allowing for only the relevant sections to be parsed; otherwise 
+ * audit.fvdl is inflated and parsed from the FPR file for every pass. The number 
+ * of bytes inflated and elements scanned are recorded in the {@link RunMetrics}
+ * for the current run. 
+ */
+public class FvdlSource implements Closeable {
+	private final String fprFileName;
+	private final RunMetrics metrics;
+	private FvdlScratchFile scratchFile = null;
+	
+	public FvdlSource(String fprFileName, RunMetrics metrics) {
+		this.fprFileName = fprFileName;
+		this.metrics = metrics;
+	}
+	
+	public FvdlSource(String fprFileName) {
+		this(fprFileName, new RunMetrics(fprFileName));
+	}
+	
+	public String getFprFileName() {
+		return fprFileName;
+	}
+	
+	public RunMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Parse the given range of audit.fvdl sections with the given parser, either
+	 * from the extracted {@link FvdlScratchFile} if enabled, or from the full 
+	 * audit.fvdl in the FPR file otherwise. 
+	 */
+	public void parse(StreamingFvdlParser parser, Section first, Section last) throws IOException, XMLStreamException {
+		FvdlScratchFile scratchFile = getScratchFile();
+		if ( scratchFile==null ) {
+			if ( !parseEntry(parser, "audit.fvdl") ) {
+				throw new FileNotFoundException("audit.fvdl not found in "+fprFileName);
+			}
+		} else {
+			long elementCount = parser.getElementCount();
+			try {
+				parser.parse(scratchFile, first, last);
+			} finally {
+				metrics.add(Counter.ELEMENTS_SCANNED, parser.getElementCount()-elementCount);
+			}
+		}
+	}
+	
+	/**
+	 * Parse the given FPR entry with the given parser, returning false if 
+	 * the FPR file doesn't contain the given entry.
+	 */
+	public boolean parseEntry(AbstractStreamingXmlParser<?> parser, String entryName) throws IOException, XMLStreamException {
+		try (ZipFile zipFile = new ZipFile(fprFileName)) {
+			ZipEntry zipEntry = zipFile.getEntry(entryName);
+			if ( zipEntry==null ) { 
+				return false;
+			}
+			long elementCount = parser.getElementCount();
+			CountingInputStream inputStream = new CountingInputStream(zipFile.getInputStream(zipEntry));
+			try {
+				parser.parse(inputStream);
+				return true;
+			} finally {
+				inputStream.close();
+				metrics.add(Counter.BYTES_INFLATED, inputStream.getByteCount());
+				metrics.add(Counter.ELEMENTS_SCANNED, parser.getElementCount()-elementCount);
+			}
+		}
+	}
+	
+	/**
+	 * Get the {@link FvdlScratchFile}, extracting it on first access, 
+	 * or null if the extractFvdl system property is not set to true.
+	 */
+	public synchronized FvdlScratchFile getScratchFile() throws IOException {
+		if ( scratchFile==null && Boolean.getBoolean("extractFvdl") ) {
+			Phase extractFvdlPhase = metrics.startPhase("extractFvdl");
+			try {
+				scratchFile = new FvdlScratchFile(fprFileName);
+				metrics.add(Counter.BYTES_INFLATED, scratchFile.getSize());
+			} finally {
+				extractFvdlPhase.close();
+			}
+		}
+		return scratchFile;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if ( scratchFile!=null ) {
+			scratchFile.close();
+			scratchFile = null;
+		}
+	}
+}
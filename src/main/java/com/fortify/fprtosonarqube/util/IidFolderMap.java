@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Specialized {@link Map} implementation for mapping Fortify instance id's to folder 
+ * names. Instance id's consisting of 32 upper-case hexadecimal characters are stored 
+ * as a pair of packed longs in an open-addressing hash table with linear probing, 
+ * together with a byte ordinal that refers to the (small) list of folder names. 
+ * The hash table can optionally be stored off-heap. Any other instance id's, and 
+ * instance id's mapped to any folder beyond the first 255 distinct folder names,
+ * are stored in a regular {@link HashMap}; every instance id is stored in either
+ * the hash table or this fallback map. 
+ * 
+ * This map doesn't support removal of entries or null values. It is safe for 
+ * concurrent reads, but not for concurrent modification.
+ */
+public class IidFolderMap extends AbstractMap<String, String> {
+	private static final int IID_LENGTH = 32;
+	private static final int SLOT_SIZE = 2*Long.BYTES+1;
+	private static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE/SLOT_SIZE);
+	private static final float MAX_LOAD_FACTOR = 0.6f;
+	private static final int MAX_FOLDERS = 255;
+	private final boolean offHeap;
+	private final List<String> folders = new ArrayList<>();
+	private final Map<String, Integer> folderOrdinals = new HashMap<>();
+	private final Map<String, String> fallbackMap = new HashMap<>();
+	private ByteBuffer table;
+	private int capacity;
+	private int packedSize = 0;
+	
+	public IidFolderMap(boolean offHeap) {
+		this(offHeap, 1024);
+	}
+	
+	public IidFolderMap(boolean offHeap, int initialCapacity) {
+		this.offHeap = offHeap;
+		this.capacity = Math.min(MAX_CAPACITY, Integer.highestOneBit(Math.max(16, initialCapacity)-1)<<1);
+		this.table = allocate(capacity);
+	}
+	
+	@Override
+	public String get(Object key) {
+		if ( !(key instanceof String) ) { return null; }
+		String iid = (String)key;
+		if ( !isPackable(iid) ) { return fallbackMap.get(iid); }
+		int slot = findSlot(table, capacity, parseHex(iid, 0), parseHex(iid, 16));
+		int ordinal = getOrdinal(table, slot);
+		return ordinal==0 ? fallbackMap.get(iid) : folders.get(ordinal-1);
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key)!=null;
+	}
+	
+	@Override
+	public String put(String iid, String folder) {
+		Objects.requireNonNull(folder, "Null folder names are not supported");
+		int ordinal = getOrCreateFolderOrdinal(folder);
+		if ( !isPackable(iid) ) {
+			return fallbackMap.put(iid, folder);
+		}
+		if ( packedSize+1 > capacity*MAX_LOAD_FACTOR ) {
+			resize();
+		}
+		long high = parseHex(iid, 0);
+		long low = parseHex(iid, 16);
+		int slot = findSlot(table, capacity, high, low);
+		int previousOrdinal = getOrdinal(table, slot);
+		String previous = previousOrdinal==0 ? null : folders.get(previousOrdinal-1);
+		if ( ordinal<0 ) {
+			// No ordinal available for this folder; move the entry to the fallback map
+			if ( previousOrdinal!=0 ) { removeSlot(slot); }
+			String previousFallback = fallbackMap.put(iid, folder);
+			return previous!=null ? previous : previousFallback;
+		}
+		setSlot(table, slot, high, low, ordinal);
+		if ( previousOrdinal==0 ) {
+			packedSize++;
+			return fallbackMap.isEmpty() ? null : fallbackMap.remove(iid);
+		}
+		return previous;
+	}
+	
+	@Override
+	public int size() {
+		return packedSize + fallbackMap.size();
+	}
+	
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		return new AbstractSet<Entry<String,String>>() {
+			@Override
+			public Iterator<Entry<String, String>> iterator() {
+				return new PackedEntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return IidFolderMap.this.size();
+			}
+		};
+	}
+	
+	/**
+	 * Write the contents of this map in a compact binary form; only
+	 * occupied slots are written. The result can be read back using 
+	 * {@link #readFrom(DataInput, boolean)}.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(folders.size());
+		for ( String folder : folders ) {
+			out.writeUTF(folder);
+		}
+		out.writeInt(packedSize);
+		for ( int slot = 0 ; slot < capacity ; slot++ ) {
+			int ordinal = getOrdinal(table, slot);
+			if ( ordinal!=0 ) {
+				out.writeLong(getHigh(table, slot));
+				out.writeLong(getLow(table, slot));
+				out.writeByte(ordinal);
+			}
+		}
+		out.writeInt(fallbackMap.size());
+		for ( Entry<String, String> entry : fallbackMap.entrySet() ) {
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+	
+	/**
+	 * Read an {@link IidFolderMap} previously written by {@link #writeTo(DataOutput)}.
+	 */
+	public static IidFolderMap readFrom(DataInput in, boolean offHeap) throws IOException {
+		int folderCount = in.readInt();
+		if ( folderCount<0 || folderCount>MAX_FOLDERS ) {
+			throw new IOException("Invalid folder count "+folderCount);
+		}
+		List<String> folders = new ArrayList<>(folderCount);
+		for ( int i = 0 ; i < folderCount ; i++ ) {
+			folders.add(in.readUTF());
+		}
+		int packedSize = in.readInt();
+		if ( packedSize<0 || packedSize>MAX_CAPACITY*MAX_LOAD_FACTOR ) {
+			throw new IOException("Invalid number of packed entries "+packedSize);
+		}
+		IidFolderMap result = new IidFolderMap(offHeap, (int)(packedSize/MAX_LOAD_FACTOR)+1);
+		for ( String folder : folders ) {
+			result.getOrCreateFolderOrdinal(folder);
+		}
+		for ( int i = 0 ; i < packedSize ; i++ ) {
+			long high = in.readLong();
+			long low = in.readLong();
+			int ordinal = in.readUnsignedByte();
+			if ( ordinal<1 || ordinal>folderCount ) {
+				throw new IOException("Invalid folder ordinal "+ordinal);
+			}
+			setSlot(result.table, findSlot(result.table, result.capacity, high, low), high, low, ordinal);
+		}
+		result.packedSize = packedSize;
+		int fallbackSize = in.readInt();
+		for ( int i = 0 ; i < fallbackSize ; i++ ) {
+			result.fallbackMap.put(in.readUTF(), in.readUTF());
+		}
+		return result;
+	}
+	
+	private int getOrCreateFolderOrdinal(String folder) {
+		Integer ordinal = folderOrdinals.get(folder);
+		if ( ordinal==null ) {
+			if ( folders.size()>=MAX_FOLDERS ) { return -1; }
+			folders.add(folder);
+			ordinal = folders.size(); // Ordinal 0 is reserved for empty slots
+			folderOrdinals.put(folder, ordinal);
+		}
+		return ordinal;
+	}
+	
+	private void resize() {
+		if ( capacity>=MAX_CAPACITY ) {
+			throw new IllegalStateException("Maximum number of instance id's exceeded");
+		}
+		int newCapacity = capacity<<1;
+		ByteBuffer newTable = allocate(newCapacity);
+		for ( int slot = 0 ; slot < capacity ; slot++ ) {
+			int ordinal = getOrdinal(table, slot);
+			if ( ordinal!=0 ) {
+				long high = getHigh(table, slot);
+				long low = getLow(table, slot);
+				setSlot(newTable, findSlot(newTable, newCapacity, high, low), high, low, ordinal);
+			}
+		}
+		this.table = newTable;
+		this.capacity = newCapacity;
+	}
+	
+	/**
+	 * Clear the given slot, shifting back any subsequent entries in the same 
+	 * probe sequence so that they can still be found.
+	 */
+	private void removeSlot(int slot) {
+		int mask = capacity-1;
+		int emptySlot = slot;
+		for ( int current = (slot+1) & mask ; getOrdinal(table, current)!=0 ; current = (current+1) & mask ) {
+			long high = getHigh(table, current);
+			long low = getLow(table, current);
+			int homeSlot = getHomeSlot(capacity, high, low);
+			// Move the entry if the empty slot lies on its probe sequence
+			if ( ((current-homeSlot) & mask) >= ((current-emptySlot) & mask) ) {
+				setSlot(table, emptySlot, high, low, getOrdinal(table, current));
+				emptySlot = current;
+			}
+		}
+		setSlot(table, emptySlot, 0, 0, 0);
+		packedSize--;
+	}
+	
+	private ByteBuffer allocate(int capacity) {
+		return offHeap ? ByteBuffer.allocateDirect(capacity*SLOT_SIZE) : ByteBuffer.allocate(capacity*SLOT_SIZE);
+	}
+	
+	/**
+	 * Find the slot that either contains the given key, or the empty slot 
+	 * where the given key should be inserted.
+	 */
+	private static final int findSlot(ByteBuffer table, int capacity, long high, long low) {
+		int mask = capacity-1;
+		int slot = getHomeSlot(capacity, high, low);
+		while ( getOrdinal(table, slot)!=0 && (getHigh(table, slot)!=high || getLow(table, slot)!=low) ) {
+			slot = (slot+1) & mask;
+		}
+		return slot;
+	}
+	
+	private static final int getHomeSlot(int capacity, long high, long low) {
+		long hash = high * 0x9E3779B97F4A7C15L ^ low;
+		return (int)(hash ^ (hash>>>32)) & (capacity-1);
+	}
+	
+	private static final long getHigh(ByteBuffer table, int slot) {
+		return table.getLong(slot*SLOT_SIZE);
+	}
+	
+	private static final long getLow(ByteBuffer table, int slot) {
+		return table.getLong(slot*SLOT_SIZE+Long.BYTES);
+	}
+	
+	private static final int getOrdinal(ByteBuffer table, int slot) {
+		return table.get(slot*SLOT_SIZE+2*Long.BYTES) & 0xFF;
+	}
+	
+	private static final void setSlot(ByteBuffer table, int slot, long high, long low, int ordinal) {
+		int offset = slot*SLOT_SIZE;
+		table.putLong(offset, high);
+		table.putLong(offset+Long.BYTES, low);
+		table.put(offset+2*Long.BYTES, (byte)ordinal);
+	}
+	
+	static final boolean isPackable(String iid) {
+		if ( iid==null || iid.length()!=IID_LENGTH ) { return false; }
+		for ( int i = 0 ; i < IID_LENGTH ; i++ ) {
+			char c = iid.charAt(i);
+			if ( !((c>='0' && c<='9') || (c>='A' && c<='F')) ) { return false; }
+		}
+		return true;
+	}
+	
+	static final long parseHex(String iid, int start) {
+		long result = 0;
+		for ( int i = start ; i < start+16 ; i++ ) {
+			char c = iid.charAt(i);
+			result = (result<<4) | (c<='9' ? c-'0' : c-'A'+10);
+		}
+		return result;
+	}
+	
+	/**
+	 * {@link Iterator} over all packed entries, followed by all fallback entries
+	 */
+	private final class PackedEntryIterator implements Iterator<Entry<String, String>> {
+		private final Iterator<Entry<String, String>> fallbackIterator = fallbackMap.entrySet().iterator();
+		private int slot = nextSlot(0);
+		
+		@Override
+		public boolean hasNext() {
+			return slot<capacity || fallbackIterator.hasNext();
+		}
+
+		@Override
+		public Entry<String, String> next() {
+			if ( slot>=capacity ) {
+				return fallbackIterator.next();
+			}
+			String iid = String.format("%016X%016X", getHigh(table, slot), getLow(table, slot));
+			String folder = folders.get(getOrdinal(table, slot)-1);
+			slot = nextSlot(slot+1);
+			return new SimpleImmutableEntry<>(iid, folder);
+		}
+		
+		private int nextSlot(int start) {
+			int result = start;
+			while ( result<capacity && getOrdinal(table, result)==0 ) { result++; }
+			return result;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Persistent, content-addressed cache of IID to folder maps. Cache entries are keyed 
+ * by the SHA-256 hash of the FPR contents and the filter set, and stored in the compact 
+ * binary form written by {@link IidFolderMap#writeTo(java.io.DataOutput)}. The cache is 
+ * bounded by total size; least recently used entries (based on file modification time,
+ * which is updated on every hit) are evicted when a new entry is stored. 
+ * 
+ * Entries are written to a temporary file and then atomically moved into place, so
+ * multiple processes can safely share the same cache directory. Entries that cannot
+ * be read, for example because they were truncated, are deleted and treated as a
+ * cache miss.
+ */
+public class IidFolderMapCache {
+	private static final int FORMAT_VERSION = 1;
+	private static final String SUFFIX = ".iidmap";
+	private static final Logger LOG = Logger.getLogger(IidFolderMapCache.class.getName());
+	private final Path cacheDir;
+	private final long maxSize;
+	private final boolean offHeap;
+	
+	public IidFolderMapCache(Path cacheDir, long maxSize, boolean offHeap) throws IOException {
+		this.cacheDir = Files.createDirectories(cacheDir);
+		this.maxSize = maxSize;
+		this.offHeap = offHeap;
+	}
+	
+	/**
+	 * Calculate the cache key for the given FPR file and filter set
+	 */
+	public String getKey(String fprFileName, String filterSet) throws IOException {
+		MessageDigest digest = getSha256Digest();
+		digest.update((FORMAT_VERSION+"\0"+(filterSet==null ? "" : filterSet)+"\0").getBytes(StandardCharsets.UTF_8));
+		byte[] buffer = new byte[64*1024];
+		try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(new File(fprFileName).toPath()))) {
+			int read;
+			while ( (read=inputStream.read(buffer))>=0 ) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for ( byte b : digest.digest() ) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Get the cached map for the given key, or null if not cached or 
+	 * if the cache entry cannot be read
+	 */
+	public Map<String, String> get(String key) throws IOException {
+		Path file = getFile(key);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			Map<String, String> result = IidFolderMap.readFrom(in, offHeap);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return result;
+		} catch ( NoSuchFileException e ) {
+			return null;
+		} catch ( IOException | RuntimeException e ) {
+			LOG.log(Level.WARNING, "Ignoring unreadable IID to folder map cache entry "+file, e);
+			Files.deleteIfExists(file);
+			return null;
+		}
+	}
+	
+	/**
+	 * Store the given map under the given key, evicting least recently
+	 * used entries if the maximum cache size is exceeded.
+	 */
+	public void put(String key, Map<String, String> iidToFolderMap) throws IOException {
+		IidFolderMap map = iidToFolderMap instanceof IidFolderMap 
+				? (IidFolderMap)iidToFolderMap : copy(iidToFolderMap);
+		Path tmpFile = Files.createTempFile(cacheDir, key, ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				map.writeTo(out);
+			}
+			move(tmpFile, getFile(key));
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+		evict();
+	}
+	
+	private void evict() throws IOException {
+		List<CacheFile> cacheFiles = new ArrayList<>();
+		long totalSize = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*"+SUFFIX)) {
+			for ( Path file : stream ) {
+				try {
+					CacheFile cacheFile = new CacheFile(file, Files.getLastModifiedTime(file).toMillis(), Files.size(file));
+					cacheFiles.add(cacheFile);
+					totalSize += cacheFile.size;
+				} catch ( NoSuchFileException e ) {
+					// Concurrently evicted by another process
+				}
+			}
+		}
+		cacheFiles.sort(Comparator.comparingLong(f->f.lastModified));
+		// Never evict the most recently used entry
+		for ( int i = 0 ; i < cacheFiles.size()-1 && totalSize>maxSize ; i++ ) {
+			Files.deleteIfExists(cacheFiles.get(i).file);
+			totalSize -= cacheFiles.get(i).size;
+		}
+	}
+	
+	private Path getFile(String key) {
+		return cacheDir.resolve(key+SUFFIX);
+	}
+	
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch ( AtomicMoveNotSupportedException e ) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private IidFolderMap copy(Map<String, String> iidToFolderMap) {
+		IidFolderMap result = new IidFolderMap(offHeap, iidToFolderMap.size());
+		result.putAll(iidToFolderMap);
+		return result;
+	}
+	
+	@RequiredArgsConstructor
+	private static final class CacheFile {
+		private final Path file;
+		private final long lastModified;
+		private final long size;
+	}
+	
+	private static MessageDigest getSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact, sorted index of the issues written by a conversion, used for incremental 
+ * conversions. Every record consists of the instance id packed into two longs, and a 
+ * 64-bit hash of the issue contents; records are sorted by instance id. A snapshot file
+ * is memory-mapped rather than loaded onto the heap, so lookups are binary searches,
+ * and determining removed issues is a streaming merge of two sorted snapshots. 
+ * 
+ * Only instance id's consisting of 32 upper-case hexadecimal characters (as generated 
+ * by Fortify) are indexed; issues with any other instance id are always considered new.
+ */
+public class IssueSnapshot implements Closeable {
+	private static final int MAGIC = 0x46534E50; // FSNP
+	private static final int HEADER_SIZE = Integer.BYTES+Integer.BYTES;
+	private static final int RECORD_SIZE = 3*Long.BYTES;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	
+	/**
+	 * Functional interface for handling removed instance id's
+	 */
+	@FunctionalInterface
+	public static interface RemovedIssueHandler {
+		void handle(String instanceId) throws IOException;
+	}
+	
+	public IssueSnapshot(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		if ( channel.size()<HEADER_SIZE || buffer.getInt(0)!=MAGIC ) {
+			channel.close();
+			throw new IOException("Not a valid issue snapshot: "+file);
+		}
+		this.size = buffer.getInt(Integer.BYTES);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Return whether the given instance id is contained in this snapshot
+	 * with the given content hash. If the instance id occurs multiple times, 
+	 * any of its records may match.
+	 */
+	public boolean contains(String instanceId, long hash) {
+		if ( !IidFolderMap.isPackable(instanceId) ) { return false; }
+		long high = IidFolderMap.parseHex(instanceId, 0);
+		long low = IidFolderMap.parseHex(instanceId, 16);
+		// Find the first record with the given instance id; there may be duplicates
+		int lo = 0, hi = size;
+		while ( lo<hi ) {
+			int mid = (lo+hi)>>>1;
+			if ( compare(getHigh(mid), getLow(mid), high, low)<0 ) { 
+				lo = mid+1; 
+			} else { 
+				hi = mid; 
+			}
+		}
+		for ( int i = lo ; i < size && getHigh(i)==high && getLow(i)==low ; i++ ) {
+			if ( getHash(i)==hash ) { return true; }
+		}
+		return false;
+	}
+	
+	/**
+	 * Pass all instance id's that are contained in this snapshot, but not 
+	 * in the given current snapshot, to the given {@link RemovedIssueHandler}.
+	 * Every removed instance id is passed only once.
+	 */
+	public void findRemoved(IssueSnapshot current, RemovedIssueHandler handler) throws IOException {
+		int j = 0;
+		for ( int i = 0 ; i < size ; i++ ) {
+			long high = getHigh(i);
+			long low = getLow(i);
+			if ( i>0 && getHigh(i-1)==high && getLow(i-1)==low ) { continue; }
+			while ( j<current.size && compare(current.getHigh(j), current.getLow(j), high, low)<0 ) { j++; }
+			if ( j>=current.size || compare(current.getHigh(j), current.getLow(j), high, low)!=0 ) {
+				handler.handle(String.format("%016X%016X", high, low));
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private long getHigh(int index) {
+		return buffer.getLong(HEADER_SIZE+index*RECORD_SIZE);
+	}
+	
+	private long getLow(int index) {
+		return buffer.getLong(HEADER_SIZE+index*RECORD_SIZE+Long.BYTES);
+	}
+	
+	private long getHash(int index) {
+		return buffer.getLong(HEADER_SIZE+index*RECORD_SIZE+2*Long.BYTES);
+	}
+	
+	private static int compare(long high1, long low1, long high2, long low2) {
+		int cmp = Long.compareUnsigned(high1, high2);
+		return cmp!=0 ? cmp : Long.compareUnsigned(low1, low2);
+	}
+	
+	/**
+	 * Builder for collecting (instance id, content hash) records in a compact 
+	 * long array, and writing them as a sorted snapshot file. 
+	 */
+	public static final class Builder {
+		private long[] records = new long[3*1024];
+		private int size = 0;
+		
+		public void add(String instanceId, long hash) {
+			if ( IidFolderMap.isPackable(instanceId) ) {
+				if ( 3*(size+1) > records.length ) {
+					records = Arrays.copyOf(records, records.length*2);
+				}
+				records[3*size] = IidFolderMap.parseHex(instanceId, 0);
+				records[3*size+1] = IidFolderMap.parseHex(instanceId, 16);
+				records[3*size+2] = hash;
+				size++;
+			}
+		}
+		
+		/**
+		 * Sort the collected records and write them to the given snapshot 
+		 * file, replacing any existing file.
+		 */
+		public void write(Path file) throws IOException {
+			sort(0, size-1);
+			Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), "snapshot", ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(size);
+					for ( int i = 0 ; i < 3*size ; i++ ) {
+						out.writeLong(records[i]);
+					}
+				}
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		}
+		
+		/** In-place quicksort on the (high, low) keys of the records in the given range */
+		private void sort(int from, int to) {
+			while ( from<to ) {
+				int mid = (from+to)>>>1;
+				long pivotHigh = records[3*mid], pivotLow = records[3*mid+1];
+				int i = from, j = to;
+				while ( i<=j ) {
+					while ( compare(records[3*i], records[3*i+1], pivotHigh, pivotLow)<0 ) { i++; }
+					while ( compare(records[3*j], records[3*j+1], pivotHigh, pivotLow)>0 ) { j--; }
+					if ( i<=j ) { swap(i++, j--); }
+				}
+				// Recurse into the smaller partition to bound stack depth
+				if ( j-from < to-i ) {
+					sort(from, j);
+					from = i;
+				} else {
+					sort(i, to);
+					to = j;
+				}
+			}
+		}
+		
+		private void swap(int a, int b) {
+			for ( int k = 0 ; k < 3 ; k++ ) {
+				long tmp = records[3*a+k];
+				records[3*a+k] = records[3*b+k];
+				records[3*b+k] = tmp;
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.SourceLocation;
+
+/**
+ * This class allows for temporarily parking issues, in document order, until
+ * all information needed to write them is available. Issues are stored in a 
+ * compact binary format in a temporary file; repeating strings like rule id's, 
+ * messages, folders and paths are only stored once in an in-memory string table. 
+ * Issues can either be stored with a resolved {@link SourceLocation}, or with 
+ * the id of a node in the UnifiedNodePool that still needs to be resolved; the 
+ * set of referenced node id's is available through {@link #getReferencedNodeIds()}.
+ */
+public class IssueSpillFile implements Closeable {
+	private static final byte TYPE_SOURCE_LOCATION = 0;
+	private static final byte TYPE_NODE_REF = 1;
+	private final Map<String, Integer> stringToIndexMap = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private final Set<String> referencedNodeIds = new HashSet<>();
+	private File file;
+	private DataOutputStream out;
+	private int count = 0;
+	
+	/**
+	 * Functional interface for handling spilled issues
+	 */
+	@FunctionalInterface
+	public static interface SpilledIssueHandler {
+		/**
+		 * Handle a spilled issue; exactly one of sourceLocation or nodeRefId will be non-null
+		 */
+		void handle(String instanceId, String ruleId, String message, String folder, SourceLocation sourceLocation, String nodeRefId) throws IOException;
+	}
+	
+	public boolean isEmpty() {
+		return count==0;
+	}
+	
+	public Set<String> getReferencedNodeIds() {
+		return referencedNodeIds;
+	}
+	
+	public void add(String instanceId, String ruleId, String message, String folder, SourceLocation sourceLocation) throws IOException {
+		DataOutputStream out = getOutputStream();
+		out.writeByte(TYPE_SOURCE_LOCATION);
+		writeIssueData(out, instanceId, ruleId, message, folder);
+		writeString(out, sourceLocation.getPath());
+		writeInteger(out, sourceLocation.getLine());
+		writeInteger(out, sourceLocation.getLineEnd());
+		writeInteger(out, sourceLocation.getColStart());
+		writeInteger(out, sourceLocation.getColEnd());
+		count++;
+	}
+	
+	public void add(String instanceId, String ruleId, String message, String folder, String nodeRefId) throws IOException {
+		DataOutputStream out = getOutputStream();
+		out.writeByte(TYPE_NODE_REF);
+		writeIssueData(out, instanceId, ruleId, message, folder);
+		out.writeUTF(nodeRefId);
+		referencedNodeIds.add(nodeRefId);
+		count++;
+	}
+	
+	/**
+	 * Pass all spilled issues, in the order they were added, to the given 
+	 * {@link SpilledIssueHandler}, and then clear this {@link IssueSpillFile}.
+	 */
+	public void replay(SpilledIssueHandler handler) throws IOException {
+		if ( count>0 ) {
+			out.close();
+			try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))) ) {
+				for ( int i = 0 ; i < count ; i++ ) {
+					byte type = in.readByte();
+					String instanceId = in.readUTF();
+					String ruleId = readString(in);
+					String message = readString(in);
+					String folder = readString(in);
+					if ( type==TYPE_SOURCE_LOCATION ) {
+						SourceLocation sourceLocation = new SourceLocation(readString(in), readInteger(in), readInteger(in), readInteger(in), readInteger(in));
+						handler.handle(instanceId, ruleId, message, folder, sourceLocation, null);
+					} else {
+						handler.handle(instanceId, ruleId, message, folder, null, in.readUTF());
+					}
+				}
+			}
+		}
+		clear();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		clear();
+	}
+	
+	private void clear() throws IOException {
+		if ( out!=null ) { out.close(); }
+		if ( file!=null ) { file.delete(); }
+		out = null;
+		file = null;
+		count = 0;
+		referencedNodeIds.clear();
+	}
+	
+	private DataOutputStream getOutputStream() throws IOException {
+		if ( out==null ) {
+			file = File.createTempFile("FortifyIssueSpill", ".bin");
+			file.deleteOnExit();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		}
+		return out;
+	}
+
+	private void writeIssueData(DataOutputStream out, String instanceId, String ruleId, String message, String folder) throws IOException {
+		out.writeUTF(instanceId);
+		writeString(out, ruleId);
+		writeString(out, message);
+		writeString(out, folder);
+	}
+	
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		if ( value==null ) {
+			out.writeInt(-1);
+		} else {
+			Integer index = stringToIndexMap.get(value);
+			if ( index==null ) {
+				index = strings.size();
+				strings.add(value);
+				stringToIndexMap.put(value, index);
+			}
+			out.writeInt(index);
+		}
+	}
+	
+	private String readString(DataInputStream in) throws IOException {
+		int index = in.readInt();
+		return index<0 ? null : strings.get(index);
+	}
+	
+	private void writeInteger(DataOutputStream out, Integer value) throws IOException {
+		out.writeBoolean(value!=null);
+		if ( value!=null ) { out.writeInt(value); }
+	}
+	
+	private Integer readInteger(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+}
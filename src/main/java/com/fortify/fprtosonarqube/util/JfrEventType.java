@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom JDK Flight Recorder event type with the given name and fields. As this 
+ * project targets Java 8, event types are created dynamically through the 
+ * jdk.jfr.EventFactory API using reflection; on JVM's that don't provide this 
+ * API (Java 8), {@link #begin()} returns null and events are silently ignored.
+ */
+final class JfrEventType {
+	private static final String CATEGORY = "Fortify FPR to SonarQube";
+	private static final Method NEW_EVENT, BEGIN, END, SET, COMMIT;
+	static {
+		Method newEvent = null, begin = null, end = null, set = null, commit = null;
+		try {
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			newEvent = Class.forName("jdk.jfr.EventFactory").getMethod("newEvent");
+			begin = eventClass.getMethod("begin");
+			end = eventClass.getMethod("end");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+		} catch ( ReflectiveOperationException | LinkageError e ) {
+			// JFR event factory not available
+		}
+		NEW_EVENT = newEvent; BEGIN = begin; END = end; SET = set; COMMIT = commit;
+	}
+	private final Object factory;
+	
+	/**
+	 * Create an event type with the given name, label and fields; field types 
+	 * must be String or primitive types supported by JFR.
+	 */
+	JfrEventType(String name, String label, Map<String, Class<?>> fields) {
+		this.factory = NEW_EVENT==null ? null : createFactory(name, label, fields);
+	}
+	
+	/**
+	 * Create and begin a new event, or return null if JFR is not available
+	 */
+	Object begin() {
+		if ( factory==null ) { return null; }
+		try {
+			Object event = NEW_EVENT.invoke(factory);
+			BEGIN.invoke(event);
+			return event;
+		} catch ( ReflectiveOperationException e ) {
+			return null;
+		}
+	}
+	
+	/**
+	 * End and commit the given event with the given field values, 
+	 * in the order in which fields were defined. 
+	 */
+	void commit(Object event, Object... values) {
+		if ( event==null ) { return; }
+		try {
+			END.invoke(event);
+			for ( int i = 0 ; i < values.length ; i++ ) {
+				SET.invoke(event, i, values[i]);
+			}
+			COMMIT.invoke(event);
+		} catch ( ReflectiveOperationException e ) {
+			// Ignore; events are for diagnostic purposes only
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Object createFactory(String name, String label, Map<String, Class<?>> fields) {
+		try {
+			Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+			Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class);
+			List<Object> annotations = Arrays.asList(
+				annotationElement.newInstance((Class<? extends Annotation>)Class.forName("jdk.jfr.Name"), name),
+				annotationElement.newInstance((Class<? extends Annotation>)Class.forName("jdk.jfr.Label"), label),
+				annotationElement.newInstance((Class<? extends Annotation>)Class.forName("jdk.jfr.Category"), new String[] {CATEGORY}));
+			List<Object> valueDescriptors = new ArrayList<>();
+			for ( Map.Entry<String, Class<?>> field : fields.entrySet() ) {
+				valueDescriptors.add(valueDescriptor.newInstance(field.getValue(), field.getKey()));
+			}
+			return Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+					.invoke(null, annotations, valueDescriptors);
+		} catch ( ReflectiveOperationException | LinkageError | RuntimeException e ) {
+			return null;
+		}
+	}
+}
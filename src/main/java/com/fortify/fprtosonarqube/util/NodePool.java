@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.SourceLocation;
+
+/**
+ * Compact storage for the source locations of UnifiedNodePool nodes. Rather than 
+ * keeping a {@link SourceLocation} object per node, every node is stored as a fixed-size 
+ * record of five ints (path index into a string table of unique paths, line, lineEnd, 
+ * colStart and colEnd) in chunks of {@link ByteBuffer} storage. Numeric node id's (as 
+ * generated by Fortify) are mapped to records through an int array indexed by node id; 
+ * any other node id's are mapped through a regular {@link HashMap}. 
+ * 
+ * Before loading, the id's of nodes that need to be loaded can be registered through 
+ * {@link #addReference(String)}. Numeric referenced node id's are stored in an 
+ * open-addressing int hash table with linear probing; any other referenced node id's
+ * are stored in a regular {@link HashSet}.
+ * 
+ * Chunks are allocated on-heap, or off-heap if requested. The memory budget covers 
+ * the chunks as well as the (estimated) size of the path table, node id indexes and 
+ * referenced node id's; 
+ * once it is exceeded, further chunks are spilled to a memory-mapped temporary file, 
+ * leaving paging to the operating system. The path table and indexes are always kept 
+ * on-heap, so they may exceed the budget on their own. This class is safe for concurrent reads once all 
+ * nodes have been added, but not for concurrent modification.
+ */
+public class NodePool implements Closeable {
+	private static final int RECORD_SIZE = 5*Integer.BYTES;
+	private static final int CHUNK_RECORDS = 1<<16;
+	private static final int CHUNK_SIZE = CHUNK_RECORDS*RECORD_SIZE;
+	private static final int NULL = Integer.MIN_VALUE;
+	/** Estimated heap usage of a path table or fallback index entry, excluding string contents */
+	private static final int ENTRY_OVERHEAD = 96;
+	private final boolean offHeap;
+	private final long memoryBudget;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private final List<String> paths = new ArrayList<>();
+	private final Map<String, Integer> pathIndexes = new HashMap<>();
+	private final Map<String, Integer> fallbackIndexes = new HashMap<>();
+	private int[] numericIndexes = new int[1024]; // record index+1, 0 if absent
+	private int[] referencedIds = new int[1024]; // numeric node id+1, 0 if empty
+	private final Set<String> referencedFallbackIds = new HashSet<>();
+	private int referencedCount = 0;
+	private int size = 0;
+	private long memoryUsed = 0;
+	private Path spillFile = null;
+	private FileChannel spillChannel = null;
+	
+	/**
+	 * Create a node pool according to the nodePoolOffHeap and nodePoolMemoryBudget 
+	 * (in MB) system properties. 
+	 */
+	public NodePool() {
+		this(Boolean.getBoolean("nodePoolOffHeap"), Long.getLong("nodePoolMemoryBudget", Long.MAX_VALUE/(1024*1024))*1024*1024);
+	}
+	
+	public NodePool(boolean offHeap, long memoryBudget) {
+		this.offHeap = offHeap;
+		this.memoryBudget = memoryBudget;
+		this.memoryUsed = (numericIndexes.length+referencedIds.length)*Integer.BYTES;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Register the given node id as being referenced, to allow the caller to load
+	 * only referenced nodes.
+	 */
+	public void addReference(String id) {
+		if ( id==null ) { return; }
+		int numericId = parseNumericId(id);
+		if ( numericId<0 ) {
+			if ( referencedFallbackIds.add(id) ) { memoryUsed += ENTRY_OVERHEAD+2*id.length(); }
+			return;
+		}
+		if ( referencedCount+1 > referencedIds.length/2 ) {
+			resizeReferences();
+		}
+		int slot = findReferenceSlot(referencedIds, numericId);
+		if ( referencedIds[slot]==0 ) {
+			referencedIds[slot] = numericId+1;
+			referencedCount++;
+		}
+	}
+	
+	/**
+	 * Check whether the given node id was registered through {@link #addReference(String)}
+	 */
+	public boolean isReferenced(String id) {
+		if ( id==null ) { return false; }
+		int numericId = parseNumericId(id);
+		return numericId<0 
+				? referencedFallbackIds.contains(id) 
+				: referencedIds[findReferenceSlot(referencedIds, numericId)]!=0;
+	}
+	
+	/**
+	 * Release the memory used for storing referenced node id's, once all 
+	 * referenced nodes have been added.
+	 */
+	public void clearReferences() {
+		for ( String id : referencedFallbackIds ) {
+			memoryUsed -= ENTRY_OVERHEAD+2*id.length();
+		}
+		referencedFallbackIds.clear();
+		memoryUsed -= (long)referencedIds.length*Integer.BYTES;
+		referencedIds = new int[16];
+		memoryUsed += referencedIds.length*Integer.BYTES;
+		referencedCount = 0;
+	}
+	
+	/**
+	 * Add the given source location for the given node id; nodes without 
+	 * source location are ignored.
+	 */
+	public void add(String id, SourceLocation sourceLocation) throws IOException {
+		if ( id==null || sourceLocation==null ) { return; }
+		int index = size;
+		if ( index%CHUNK_RECORDS==0 ) {
+			chunks.add(allocateChunk());
+		}
+		ByteBuffer chunk = chunks.get(index/CHUNK_RECORDS);
+		int offset = (index%CHUNK_RECORDS)*RECORD_SIZE;
+		chunk.putInt(offset, getPathIndex(sourceLocation.getPath()));
+		chunk.putInt(offset+4, toInt(sourceLocation.getLine()));
+		chunk.putInt(offset+8, toInt(sourceLocation.getLineEnd()));
+		chunk.putInt(offset+12, toInt(sourceLocation.getColStart()));
+		chunk.putInt(offset+16, toInt(sourceLocation.getColEnd()));
+		putIndex(id, index);
+		size++;
+	}
+	
+	/**
+	 * Get the source location for the given node id, or null if not available
+	 */
+	public SourceLocation get(String id) {
+		int index = getIndex(id);
+		return index<0 ? null : read(index);
+	}
+	
+	/**
+	 * Get the source locations for the given node id's in a single batch, returning 
+	 * an array containing the source location (or null if not available) for each 
+	 * node id. Records are read in storage order, to access every chunk (and page of 
+	 * spilled chunks) only once, and records referenced multiple times are decoded 
+	 * only once, sharing the same {@link SourceLocation} instance.
+	 */
+	public SourceLocation[] getAll(List<String> ids) {
+		long[] keys = new long[ids.size()]; // record index in upper 32 bits, position in lower 32 bits
+		int count = 0;
+		for ( int i = 0 ; i < ids.size() ; i++ ) {
+			int index = getIndex(ids.get(i));
+			if ( index>=0 ) { keys[count++] = ((long)index<<32) | i; }
+		}
+		Arrays.sort(keys, 0, count);
+		SourceLocation[] result = new SourceLocation[ids.size()];
+		int previousIndex = -1;
+		SourceLocation sourceLocation = null;
+		for ( int i = 0 ; i < count ; i++ ) {
+			int index = (int)(keys[i]>>>32);
+			if ( index!=previousIndex ) {
+				sourceLocation = read(index);
+				previousIndex = index;
+			}
+			result[(int)keys[i]] = sourceLocation;
+		}
+		return result;
+	}
+	
+	private SourceLocation read(int index) {
+		ByteBuffer chunk = chunks.get(index/CHUNK_RECORDS);
+		int offset = (index%CHUNK_RECORDS)*RECORD_SIZE;
+		int pathIndex = chunk.getInt(offset);
+		return new SourceLocation(pathIndex==NULL ? null : paths.get(pathIndex), 
+				toInteger(chunk.getInt(offset+4)), toInteger(chunk.getInt(offset+8)), 
+				toInteger(chunk.getInt(offset+12)), toInteger(chunk.getInt(offset+16)));
+	}
+	
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		if ( spillChannel!=null ) {
+			spillChannel.close();
+			Files.deleteIfExists(spillFile);
+			spillChannel = null;
+		}
+	}
+	
+	private ByteBuffer allocateChunk() throws IOException {
+		if ( memoryUsed+CHUNK_SIZE <= memoryBudget ) {
+			memoryUsed += CHUNK_SIZE;
+			return offHeap ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE);
+		}
+		if ( spillChannel==null ) {
+			spillFile = Files.createTempFile("FortifyNodePool", ".bin");
+			spillFile.toFile().deleteOnExit();
+			spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return spillChannel.map(MapMode.READ_WRITE, spillChannel.size(), CHUNK_SIZE);
+	}
+	
+	private void resizeReferences() {
+		int[] newReferencedIds = new int[referencedIds.length*2];
+		for ( int value : referencedIds ) {
+			if ( value!=0 ) { newReferencedIds[findReferenceSlot(newReferencedIds, value-1)] = value; }
+		}
+		memoryUsed += (long)(newReferencedIds.length-referencedIds.length)*Integer.BYTES;
+		referencedIds = newReferencedIds;
+	}
+	
+	/**
+	 * Find the slot that either contains the given numeric node id, or the empty 
+	 * slot where the given numeric node id should be inserted.
+	 */
+	private static int findReferenceSlot(int[] table, int numericId) {
+		int mask = table.length-1;
+		int hash = numericId * 0x9E3779B9;
+		int slot = (hash ^ (hash>>>16)) & mask;
+		while ( table[slot]!=0 && table[slot]!=numericId+1 ) {
+			slot = (slot+1) & mask;
+		}
+		return slot;
+	}
+	
+	private int getPathIndex(String path) {
+		if ( path==null ) { return NULL; }
+		Integer index = pathIndexes.get(path);
+		if ( index==null ) {
+			index = paths.size();
+			paths.add(path);
+			pathIndexes.put(path, index);
+			memoryUsed += ENTRY_OVERHEAD+2*path.length();
+		}
+		return index;
+	}
+	
+	private void putIndex(String id, int index) {
+		int numericId = parseNumericId(id);
+		// Use the numeric index only if it remains reasonably dense
+		if ( numericId>=0 && numericId < Math.max(numericIndexes.length, 4*(size+1024)) ) {
+			if ( numericId>=numericIndexes.length ) {
+				int length = Math.max(numericId+1, numericIndexes.length*2);
+				memoryUsed += (long)(length-numericIndexes.length)*Integer.BYTES;
+				numericIndexes = Arrays.copyOf(numericIndexes, length);
+			}
+			numericIndexes[numericId] = index+1;
+		} else {
+			fallbackIndexes.put(id, index);
+			memoryUsed += ENTRY_OVERHEAD+2*id.length();
+		}
+	}
+	
+	private int getIndex(String id) {
+		if ( id==null ) { return -1; }
+		int numericId = parseNumericId(id);
+		if ( numericId>=0 && numericId<numericIndexes.length && numericIndexes[numericId]>0 ) {
+			return numericIndexes[numericId]-1;
+		}
+		Integer index = fallbackIndexes.get(id);
+		return index==null ? -1 : index;
+	}
+	
+	private static int parseNumericId(String id) {
+		int length = id.length();
+		if ( length==0 || length>9 ) { return -1; }
+		int result = 0;
+		for ( int i = 0 ; i < length ; i++ ) {
+			char c = id.charAt(i);
+			if ( c<'0' || c>'9' ) { return -1; }
+			result = result*10 + (c-'0');
+		}
+		return result;
+	}
+	
+	private static int toInt(Integer value) {
+		return value==null ? NULL : value;
+	}
+	
+	private static Integer toInteger(int value) {
+		return value==NULL ? null : value;
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+/**
+ * Persistent cache of rendered {@link SQRule} instances. Every cache entry contains all
+ * rules seen so far for a specific set of rule packs, keyed by the SHA-256 hash of the 
+ * cache format version and the sorted rule pack id's and versions; rules within an 
+ * entry are keyed by class id. As an FPR file only contains descriptions for the class 
+ * id's used in that FPR, entries are extended with any new rules by 
+ * {@link #put(String, Map, Collection)}. 
+ */
+public class RuleCache {
+	/** Cache format version; must be incremented whenever the way rules are rendered changes */
+	private static final int FORMAT_VERSION = 1;
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final CollectionType RULE_LIST_TYPE = OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, SQRule.class);
+	private final Path cacheDir;
+	
+	public RuleCache(Path cacheDir) throws IOException {
+		this.cacheDir = Files.createDirectories(cacheDir);
+	}
+	
+	/**
+	 * Calculate the cache key for the given rule pack id's and versions
+	 */
+	public String getKey(Collection<String> rulePackVersions) {
+		MessageDigest digest = getSha256Digest();
+		digest.update(("format:"+FORMAT_VERSION+"\n").getBytes(StandardCharsets.UTF_8));
+		for ( String rulePackVersion : new TreeSet<>(rulePackVersions) ) {
+			digest.update((rulePackVersion+"\n").getBytes(StandardCharsets.UTF_8));
+		}
+		StringBuilder sb = new StringBuilder();
+		for ( byte b : digest.digest() ) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Get the cached rules for the given key, indexed by class id, 
+	 * or an empty map if not cached.
+	 */
+	public Map<String, SQRule> get(String key) throws IOException {
+		Map<String, SQRule> result = new LinkedHashMap<>();
+		try {
+			List<SQRule> rules = OBJECT_MAPPER.readValue(getFile(key).toFile(), RULE_LIST_TYPE);
+			for ( SQRule rule : rules ) {
+				result.put(rule.getRuleId(), rule);
+			}
+		} catch ( NoSuchFileException | FileNotFoundException e ) {
+			// Not cached yet
+		}
+		return result;
+	}
+	
+	/**
+	 * Store the given cached rules, extended with the given new rules, under the given
+	 * key. The cache file is only rewritten if any new rules were added.
+	 */
+	public void put(String key, Map<String, SQRule> cachedRules, Collection<SQRule> newRules) throws IOException {
+		Map<String, SQRule> rules = new LinkedHashMap<>(cachedRules);
+		for ( SQRule rule : newRules ) {
+			rules.putIfAbsent(rule.getRuleId(), rule);
+		}
+		if ( rules.size()>cachedRules.size() ) {
+			Path tmpFile = Files.createTempFile(cacheDir, key, ".tmp");
+			try {
+				OBJECT_MAPPER.writeValue(tmpFile.toFile(), rules.values());
+				Files.move(tmpFile, getFile(key), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		}
+	}
+	
+	private Path getFile(String key) {
+		return cacheDir.resolve(key+".rules.json");
+	}
+	
+	private static MessageDigest getSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Metrics for a single conversion run: wall and CPU time per {@link Phase}, 
+ * a set of {@link Counter}s and peak heap usage. Phases are emitted as custom 
+ * JFR events (com.fortify.fprtosonarqube.Phase) while recording, and the run 
+ * totals as a com.fortify.fprtosonarqube.Run event when the run is finished. 
+ * The {@link #writeReport(Path)} method writes all metrics as a JSON run report. 
+ * 
+ * All methods are thread-safe. Phases may be nested or run concurrently; phase 
+ * CPU time is the CPU time of the thread running the phase, excluding any work
+ * done by worker threads, whereas the run CPU time is the CPU time of the whole 
+ * process.
+ */
+public class RunMetrics {
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+	private static final JfrEventType PHASE_EVENT = new JfrEventType("com.fortify.fprtosonarqube.Phase", "FPR Conversion Phase", 
+			fields("fprFile", String.class, "phase", String.class, "cpuTime", long.class));
+	private static final JfrEventType RUN_EVENT = new JfrEventType("com.fortify.fprtosonarqube.Run", "FPR Conversion Run", getRunEventFields());
+	private final String fprFileName;
+	private final long startTime = System.nanoTime();
+	private final long startCpuTime = getProcessCpuTime();
+	private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+	private final Map<String, PhaseTotals> phases = new LinkedHashMap<>();
+	private final Object runEvent = RUN_EVENT.begin();
+	private long endTime = -1;
+	private long endCpuTime = -1;
+	
+	public static enum Counter {
+		/** Number of audit.fvdl and other FPR entry bytes inflated */
+		BYTES_INFLATED("bytesInflated"),
+		/** Number of XML elements dispatched through the path trie of a streaming parser */
+		ELEMENTS_SCANNED("elementsScanned"),
+		/** Number of issues read from the ReportGenerator output */
+		REPORT_ISSUES("reportIssues"),
+		/** Number of entries in the instance id to folder map */
+		IID_MAP_SIZE("iidMapSize"),
+		/** Number of vulnerabilities bound to domain objects */
+		VULNERABILITIES_BOUND("vulnerabilitiesBound"),
+		ISSUES_EMITTED("issuesEmitted"),
+		RULES_EMITTED("rulesEmitted"),
+		/** Number of node references resolved through the node pool */
+		NODE_POOL_HITS("nodePoolHits"),
+		/** Number of node references not found in the node pool */
+		NODE_POOL_MISSES("nodePoolMisses");
+		
+		private final String fieldName;
+		
+		private Counter(String fieldName) {
+			this.fieldName = fieldName;
+		}
+	}
+	
+	public RunMetrics(String fprFileName) {
+		this.fprFileName = fprFileName;
+		for ( Counter counter : Counter.values() ) {
+			counters.put(counter, new LongAdder());
+		}
+	}
+	
+	public void add(Counter counter, long value) {
+		counters.get(counter).add(value);
+	}
+	
+	public void increment(Counter counter) {
+		counters.get(counter).increment();
+	}
+	
+	public long get(Counter counter) {
+		return counters.get(counter).sum();
+	}
+	
+	/**
+	 * Start a phase with the given name; the phase ends when the 
+	 * returned {@link Phase} is closed. Phases with the same name
+	 * are accumulated.
+	 */
+	public Phase startPhase(String name) {
+		return new Phase(name);
+	}
+	
+	/**
+	 * Mark the run as finished, emitting the run event. Any metrics 
+	 * recorded after this method has been called are only included 
+	 * in the run report, not in the run event.
+	 */
+	public synchronized void finish() {
+		if ( endTime<0 ) {
+			endTime = System.nanoTime();
+			endCpuTime = getProcessCpuTime();
+			Object[] values = new Object[Counter.values().length+4];
+			values[0] = fprFileName;
+			values[1] = Math.max(0, endCpuTime-startCpuTime);
+			values[2] = getPeakHeapUsage();
+			values[3] = (long)phases.size();
+			for ( Counter counter : Counter.values() ) {
+				values[counter.ordinal()+4] = get(counter);
+			}
+			RUN_EVENT.commit(runEvent, values);
+		}
+	}
+	
+	/**
+	 * Get all metrics as a map suitable for JSON serialization; if the 
+	 * run hasn't finished yet, times are reported up to now.
+	 */
+	public synchronized Map<String, Object> getReport() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("fprFile", fprFileName);
+		result.put("wallTimeMillis", toMillis((endTime<0 ? System.nanoTime() : endTime)-startTime));
+		result.put("processCpuTimeMillis", toMillis((endCpuTime<0 ? getProcessCpuTime() : endCpuTime)-startCpuTime));
+		result.put("peakHeapBytes", getPeakHeapUsage());
+		Map<String, Object> phaseReports = new LinkedHashMap<>();
+		for ( Map.Entry<String, PhaseTotals> phase : phases.entrySet() ) {
+			phaseReports.put(phase.getKey(), phase.getValue().getReport());
+		}
+		result.put("phases", phaseReports);
+		Map<String, Object> counterReports = new LinkedHashMap<>();
+		for ( Counter counter : Counter.values() ) {
+			counterReports.put(counter.fieldName, get(counter));
+		}
+		result.put("counters", counterReports);
+		return result;
+	}
+	
+	/**
+	 * Write the run report to the given file
+	 */
+	public void writeReport(Path file) throws IOException {
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), getReport());
+	}
+	
+	private synchronized void addPhase(String name, long wallTime, long cpuTime) {
+		PhaseTotals totals = phases.computeIfAbsent(name, k->new PhaseTotals());
+		totals.count++;
+		totals.wallTime += wallTime;
+		totals.cpuTime += cpuTime;
+	}
+	
+	/**
+	 * JVM-wide peak heap usage, summed over all heap memory pools
+	 */
+	private static long getPeakHeapUsage() {
+		long result = 0;
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			if ( pool.getType()==MemoryType.HEAP && pool.getPeakUsage()!=null ) {
+				result += pool.getPeakUsage().getUsed();
+			}
+		}
+		return result;
+	}
+	
+	private static long getProcessCpuTime() {
+		OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+		return bean instanceof com.sun.management.OperatingSystemMXBean 
+				? ((com.sun.management.OperatingSystemMXBean)bean).getProcessCpuTime() : 0;
+	}
+	
+	private static long getThreadCpuTime() {
+		return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+	}
+	
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+	
+	private static Map<String, Class<?>> getRunEventFields() {
+		Map<String, Class<?>> result = fields("fprFile", String.class, "cpuTime", long.class, "peakHeap", long.class, "phases", long.class);
+		for ( Counter counter : Counter.values() ) {
+			result.put(counter.fieldName, long.class);
+		}
+		return result;
+	}
+	
+	private static Map<String, Class<?>> fields(Object... namesAndTypes) {
+		Map<String, Class<?>> result = new LinkedHashMap<>();
+		for ( int i = 0 ; i < namesAndTypes.length ; i+=2 ) {
+			result.put((String)namesAndTypes[i], (Class<?>)namesAndTypes[i+1]);
+		}
+		return result;
+	}
+	
+	/**
+	 * A running phase; closing the phase records its wall and CPU time
+	 */
+	public final class Phase implements AutoCloseable {
+		private final String name;
+		private final long startTime = System.nanoTime();
+		private final long startCpuTime = getThreadCpuTime();
+		private final Object event = PHASE_EVENT.begin();
+		
+		private Phase(String name) {
+			this.name = name;
+		}
+		
+		@Override
+		public void close() {
+			long cpuTime = getThreadCpuTime()-startCpuTime;
+			addPhase(name, System.nanoTime()-startTime, cpuTime);
+			PHASE_EVENT.commit(event, fprFileName, name, cpuTime);
+		}
+	}
+	
+	private static final class PhaseTotals {
+		private long count;
+		private long wallTime;
+		private long cpuTime;
+		
+		private Map<String, Object> getReport() {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("count", count);
+			result.put("wallTimeMillis", toMillis(wallTime));
+			result.put("cpuTimeMillis", toMillis(cpuTime));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link Logger} wrapper for logging per-item details on hot paths. Messages are 
+ * only built if the given level is enabled, and then only for every n-th call, 
+ * n being configured through the logSampleRate system property (default 1000).
+ */
+public class SampledLogger {
+	private static final long SAMPLE_RATE = Math.max(1, Long.getLong("logSampleRate", 1000));
+	private final Logger logger;
+	private final String sourceClass;
+	private final AtomicLong count = new AtomicLong();
+	
+	public SampledLogger(Class<?> clazz) {
+		this.sourceClass = clazz.getName();
+		this.logger = Logger.getLogger(sourceClass);
+	}
+	
+	public void log(Level level, Supplier<String> messageSupplier) {
+		if ( logger.isLoggable(level) && count.getAndIncrement()%SAMPLE_RATE==0 ) {
+			logger.logp(level, sourceClass, null, messageSupplier);
+		}
+	}
+}
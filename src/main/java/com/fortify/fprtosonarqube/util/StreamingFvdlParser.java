@@ -31,11 +31,14 @@ import java.util.zip.ZipFile;
 
 import javax.xml.stream.XMLStreamException;
 
+import com.fortify.fprtosonarqube.util.FvdlScratchFile.Section;
 import com.fortify.util.xml.AbstractStreamingXmlParser;
 
 /**
  * Concrete implementation for {@link AbstractStreamingXmlParser}; this adds
- * the {@link #parse(String)} method for parsing audit.fvdl from an FPR file
+ * the {@link #parseFpr(String)} method for parsing audit.fvdl from an FPR file,
+ * and the {@link #parse(FvdlScratchFile, Section, Section)} method for parsing
+ * a range of sections from an already extracted audit.fvdl
  *  
  * @author Ruud Senden
  *
@@ -47,6 +50,12 @@ public class StreamingFvdlParser extends AbstractStreamingXmlParser<StreamingFvd
 		}
 	}
 
+	public final void parse(FvdlScratchFile scratchFile, Section first, Section last) throws IOException, XMLStreamException {
+		try (InputStream inputStream = scratchFile.getInputStream(first, last)) {
+			parse(inputStream);
+		}
+	}
+
 	private void parse(ZipFile fprFile) throws IOException, XMLStreamException {
 		ZipEntry zipEntry = fprFile.getEntry("audit.fvdl");
 		
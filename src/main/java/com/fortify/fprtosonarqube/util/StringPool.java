@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe pool for deduplicating strings that repeat across issues, like rule 
+ * id's, messages and file paths. Besides returning a canonical instance for a given 
+ * string through {@link #intern(String)}, values derived from a key (like absolute 
+ * file paths derived from relative paths) can be resolved only once per key through 
+ * {@link #resolve(String, Function)}; a single pool should be used for either 
+ * interning or resolving, not both. To bound memory usage on unexpected input, 
+ * strings are no longer pooled once the given maximum number of entries is reached.
+ */
+public class StringPool {
+	private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+	private final int maxSize;
+	
+	public StringPool(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	public String intern(String value) {
+		if ( value==null ) { return null; }
+		String result = pool.get(value);
+		if ( result==null ) {
+			if ( pool.size()>=maxSize ) { return value; }
+			result = pool.putIfAbsent(value, value);
+			if ( result==null ) { result = value; }
+		}
+		return result;
+	}
+	
+	public String resolve(String key, Function<String, String> resolver) {
+		if ( key==null ) { return null; }
+		String result = pool.get(key);
+		if ( result==null ) {
+			result = resolver.apply(key);
+			if ( pool.size()<maxSize ) { pool.putIfAbsent(key, result); }
+		}
+		return result;
+	}
+}
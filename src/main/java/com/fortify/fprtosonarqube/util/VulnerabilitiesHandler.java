@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability;
+import com.fortify.fprtosonarqube.reader.DomainReader;
+import com.fortify.util.concurrent.ParallelPipeline;
+import com.fortify.util.concurrent.ParallelPipeline.Worker;
+import com.fortify.util.concurrent.ParallelPipeline.Writer;
+import com.fortify.util.xml.XmlHandler;
+import com.fortify.util.xml.XmlStreamReaderHelper;
+
+/**
+ * {@link XmlHandler} implementation for the FVDL Vulnerabilities element. Each
+ * Vulnerability element that is accepted by the given instance id filter is read
+ * using the given {@link DomainReader} and mapped using the given mapper; non-null 
+ * mapping results are passed to the given writer. 
+ * 
+ * If the workerThreads system property is larger than 1, Vulnerability elements are 
+ * copied as raw XML fragments by the parsing thread, and read and mapped in parallel 
+ * by a {@link ParallelPipeline}. Results are passed to the writer from a single writer 
+ * thread, in document order unless the unorderedOutput system property is set to true. 
+ * The number of fragments in flight is bounded by the workerQueueSize system property.
+ * In either case, all results have been written when the handler returns.
+ */
+public class VulnerabilitiesHandler<R> implements XmlHandler, Closeable {
+	private final DomainReader domainReader;
+	private final Predicate<String> instanceIdFilter;
+	private final Worker<FvdlVulnerability, R> mapper;
+	private final Writer<R> writer;
+	private final int workerThreads = Integer.getInteger("workerThreads", 1);
+	private ParallelPipeline<byte[], R> pipeline = null;
+	
+	public VulnerabilitiesHandler(DomainReader domainReader, Predicate<String> instanceIdFilter, Worker<FvdlVulnerability, R> mapper, Writer<R> writer) {
+		this.domainReader = domainReader;
+		this.instanceIdFilter = instanceIdFilter;
+		this.mapper = mapper;
+		this.writer = writer;
+	}
+
+	@Override
+	public void handle(XMLStreamReader reader) throws IOException, XMLStreamException {
+		if ( workerThreads>1 ) {
+			pipeline = new ParallelPipeline<>("fvdl", workerThreads, 
+					Integer.getInteger("workerQueueSize", workerThreads*64), 
+					!Boolean.getBoolean("unorderedOutput"), this::map, writer);
+		}
+		while ( reader.nextTag()==XMLEvent.START_ELEMENT ) {
+			if ( !"Vulnerability".equals(reader.getLocalName()) ) {
+				XmlStreamReaderHelper.skipElement(reader);
+			} else if ( pipeline!=null ) {
+				pipeline.submit(XmlStreamReaderHelper.copyElement(reader));
+			} else {
+				R result = map(reader);
+				if ( result!=null ) {
+					writer.write(result);
+				}
+			}
+		}
+		if ( pipeline!=null ) {
+			pipeline.finish();
+			pipeline = null;
+		}
+	}
+	
+	@Override
+	public void close() {
+		if ( pipeline!=null ) {
+			pipeline.close();
+		}
+	}
+	
+	private R map(XMLStreamReader reader) throws IOException, XMLStreamException {
+		FvdlVulnerability vuln = domainReader.readVulnerability(reader, instanceIdFilter);
+		return vuln==null ? null : mapper.process(vuln);
+	}
+	
+	private R map(byte[] fragment) throws IOException, XMLStreamException {
+		XMLStreamReader reader = XmlStreamReaderHelper.createXmlStreamReader(fragment);
+		try {
+			return map(reader);
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.concurrent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * This class implements a simple pipeline; inputs submitted through {@link #submit(Object)}
+ * are processed by a pool of worker threads, and the results are passed to a single
+ * writer thread, either in submission order or in completion order. The number of 
+ * inputs that have been submitted but not yet written is bounded by the configured
+ * capacity; {@link #submit(Object)} blocks if this capacity has been reached.
+ * 
+ * Any exception thrown by a worker or by the writer is rethrown by the next call 
+ * to {@link #submit(Object)} or {@link #finish()}.
+ */
+public class ParallelPipeline<I, O> implements Closeable {
+	private final FutureTask<O> endMarker = new FutureTask<>(()->null);
+	private final BlockingQueue<Future<O>> results = new LinkedBlockingQueue<>();
+	private final ExecutorService workerPool;
+	private final Thread writerThread;
+	private final Semaphore permits;
+	private final int capacity;
+	private final boolean ordered;
+	private final Worker<I, O> worker;
+	private final Writer<O> writer;
+	private volatile Throwable failure = null;
+	
+	@FunctionalInterface
+	public static interface Worker<I, O> {
+		/** Process the given input; null results will not be passed to the {@link Writer} */
+		O process(I input) throws IOException, XMLStreamException;
+	}
+	
+	@FunctionalInterface
+	public static interface Writer<O> {
+		void write(O output) throws IOException, XMLStreamException;
+	}
+	
+	public ParallelPipeline(String name, int threads, int capacity, boolean ordered, Worker<I, O> worker, Writer<O> writer) {
+		this.capacity = capacity;
+		this.permits = new Semaphore(capacity);
+		this.ordered = ordered;
+		this.worker = worker;
+		this.writer = writer;
+		this.workerPool = Executors.newFixedThreadPool(threads, getThreadFactory(name+"-worker-"));
+		this.writerThread = new Thread(this::writeResults, name+"-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+	
+	/**
+	 * Submit the given input for processing, blocking if the pipeline is at capacity.
+	 */
+	public void submit(I input) throws IOException, XMLStreamException {
+		checkFailure();
+		acquire(1);
+		FutureTask<O> task = ordered 
+			? new FutureTask<>(()->worker.process(input))
+			: new FutureTask<O>(()->worker.process(input)) {
+				@Override
+				protected void done() { results.add(this); }
+			};
+		if ( ordered ) { results.add(task); }
+		workerPool.execute(task);
+	}
+	
+	/**
+	 * Wait until all submitted inputs have been processed and written, 
+	 * and stop the worker and writer threads.
+	 */
+	public void finish() throws IOException, XMLStreamException {
+		acquire(capacity);
+		results.add(endMarker);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pipeline to finish");
+		} finally {
+			workerPool.shutdown();
+		}
+		checkFailure();
+	}
+	
+	/**
+	 * Stop the worker and writer threads without waiting for any pending inputs
+	 * to be processed; this is a no-op if {@link #finish()} was called before. 
+	 */
+	@Override
+	public void close() {
+		workerPool.shutdownNow();
+		writerThread.interrupt();
+	}
+	
+	private void writeResults() {
+		try {
+			Future<O> result;
+			while ( (result = results.take()) != endMarker ) {
+				try {
+					O output = result.get();
+					if ( output!=null && failure==null ) {
+						writer.write(output);
+					}
+				} catch ( ExecutionException e ) {
+					failure = failure!=null ? failure : e.getCause();
+				} catch ( Throwable t ) {
+					failure = failure!=null ? failure : t;
+				} finally {
+					permits.release();
+				}
+			}
+		} catch (InterruptedException e) {
+			// Pipeline was closed
+		}
+	}
+	
+	private void acquire(int count) throws IOException {
+		try {
+			permits.acquire(count);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pipeline capacity");
+		}
+	}
+
+	private void checkFailure() throws IOException, XMLStreamException {
+		Throwable t = failure;
+		if ( t instanceof IOException ) { throw (IOException)t; }
+		if ( t instanceof XMLStreamException ) { throw (XMLStreamException)t; }
+		if ( t instanceof RuntimeException ) { throw (RuntimeException)t; }
+		if ( t instanceof Error ) { throw (Error)t; }
+		if ( t!=null ) { throw new IOException("Error processing pipeline input", t); }
+	}
+	
+	private static final ThreadFactory getThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r->{
+			Thread thread = new Thread(r, prefix+count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
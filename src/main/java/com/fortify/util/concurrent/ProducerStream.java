@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.concurrent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy, sequential {@link Stream} of items pushed by a {@link Producer} that runs on 
+ * a dedicated background thread. Items are handed over through a bounded queue, so 
+ * the producer never runs more than the given capacity ahead of the consumer. The 
+ * producer is started on the first terminal operation; closing the stream cancels 
+ * the producer by interrupting its thread and failing any further items with a 
+ * {@link CancellationException}. Any exception thrown by the producer is rethrown
+ * by the stream after all preceding items have been consumed.
+ */
+public final class ProducerStream<T> extends Spliterators.AbstractSpliterator<T> {
+	private static final Object END = new Object();
+	private final String name;
+	private final Producer<T> producer;
+	private final BlockingQueue<Object> queue;
+	private volatile boolean cancelled = false;
+	private volatile Throwable failure = null;
+	private Thread thread = null;
+	private boolean done = false;
+	
+	/**
+	 * Functional interface for pushing items to the given {@link Consumer} 
+	 */
+	@FunctionalInterface
+	public static interface Producer<T> {
+		void produce(Consumer<T> consumer) throws Exception;
+	}
+	
+	private ProducerStream(String name, int capacity, Producer<T> producer) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED|Spliterator.NONNULL);
+		this.name = name;
+		this.producer = producer;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+	
+	public static final <T> Stream<T> of(String name, int capacity, Producer<T> producer) {
+		ProducerStream<T> spliterator = new ProducerStream<>(name, capacity, producer);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+	}
+	
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if ( done ) { return false; }
+		if ( thread==null ) { start(); }
+		Object item;
+		try {
+			item = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new CancellationException("Interrupted while waiting for "+name);
+		}
+		if ( item==END ) {
+			done = true;
+			rethrowFailure();
+			return false;
+		}
+		@SuppressWarnings("unchecked")
+		T t = (T)item;
+		action.accept(t);
+		return true;
+	}
+	
+	private synchronized void start() {
+		thread = new Thread(()->{
+			try {
+				producer.produce(this::put);
+			} catch (Throwable t) {
+				if ( !cancelled ) { failure = t; }
+			} finally {
+				putEnd();
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private void put(T item) {
+		if ( cancelled ) { throw new CancellationException(name+" cancelled"); }
+		try {
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException(name+" cancelled");
+		}
+	}
+	
+	private void putEnd() {
+		if ( !cancelled ) {
+			try {
+				queue.put(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private synchronized void cancel() {
+		cancelled = true;
+		done = true;
+		if ( thread!=null ) {
+			thread.interrupt();
+		}
+		queue.clear();
+	}
+	
+	private void rethrowFailure() {
+		Throwable t = failure;
+		if ( t instanceof RuntimeException ) { throw (RuntimeException)t; }
+		if ( t instanceof Error ) { throw (Error)t; }
+		if ( t instanceof IOException ) { throw new UncheckedIOException((IOException)t); }
+		if ( t!=null ) { throw new IllegalStateException("Error in "+name, t); }
+	}
+}
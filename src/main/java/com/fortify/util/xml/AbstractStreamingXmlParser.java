@@ -27,33 +27,34 @@ package com.fortify.util.xml;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Stack;
 
-import javax.xml.stream.StreamFilter;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
 
-import com.fasterxml.jackson.core.StreamReadFeature;
-import com.fasterxml.jackson.dataformat.xml.XmlFactory;
-
+/**
+ * Abstract base class for streaming XML parsers that invoke the registered 
+ * {@link XmlHandler} instances for elements matching the corresponding paths. 
+ * Paths are relative to the document root element, for example 'Build/SourceBasePath'. 
+ * 
+ * Registered paths are compiled into a trie that is advanced for every element
+ * without any allocations; subtrees that cannot match any of the registered 
+ * paths are skipped as a whole. 
+ */
 public abstract class AbstractStreamingXmlParser<T extends AbstractStreamingXmlParser<T>> {
-	private static final XMLInputFactory XML_FACTORY = _getXmlInputFactory();
-	private static final StreamFilter START_OR_END_ELT_FILTER = new StreamFilter() {
-		@Override
-		public boolean accept(XMLStreamReader reader) {
-			return reader.isStartElement() || reader.isEndElement();
-		}
-	};
-	private final Map<String, XmlHandler> pathToHandlerMap = new LinkedHashMap<>();
+	private final PathTrieNode rootNode = new PathTrieNode();
 	@SuppressWarnings("unchecked")
 	private final T _this = (T)this;
+	private long elementCount = 0;
 	
 	public final T handler(String path, XmlHandler handler) {
-		pathToHandlerMap.put(path, handler);
+		PathTrieNode node = rootNode;
+		for ( String localName : path.split("/") ) {
+			node = node.getOrCreateChild(localName);
+		}
+		node.handler = handler;
 		return _this;
 	}
 	
@@ -64,33 +65,76 @@ public abstract class AbstractStreamingXmlParser<T extends AbstractStreamingXmlP
 	}
 
 	public final void parse(InputStream inputStream) throws IOException, XMLStreamException {
-		XMLStreamReader unfilteredReader = XML_FACTORY.createXMLStreamReader(inputStream);
-		XMLStreamReader filteredReader = XML_FACTORY.createFilteredReader(unfilteredReader, START_OR_END_ELT_FILTER);
-		parse(filteredReader, unfilteredReader, new Stack<String>());
+		XMLStreamReader reader = XmlStreamReaderHelper.getDefaultXmlInputFactory().createXMLStreamReader(inputStream);
+		try {
+			parse(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Get the total number of elements dispatched through the path trie by all 
+	 * {@link #parse(InputStream)} invocations on this parser; this excludes the 
+	 * contents of skipped subtrees and of elements read by handlers. 
+	 */
+	public final long getElementCount() {
+		return elementCount;
 	}
 
-	private final void parse(XMLStreamReader filteredReader, XMLStreamReader unfilteredReader, Stack<String> stack) throws XMLStreamException, IOException {
-		while (filteredReader.hasNext()) {
-			int type = filteredReader.next();
+	private final void parse(XMLStreamReader reader) throws XMLStreamException, IOException {
+		PathTrieNode[] stack = new PathTrieNode[rootNode.getHeight()+1];
+		int depth = -1; // Document root element not yet encountered
+		while (reader.hasNext()) {
+			int type = reader.next();
 			if ( type==XMLEvent.START_ELEMENT ) {
-				stack.push(filteredReader.getLocalName()); 
-				XmlHandler handler = pathToHandlerMap.get(String.join("/", stack));
-				if ( handler != null ) {
-					handler.handle(unfilteredReader);
-					stack.pop();
+				elementCount++;
+				if ( depth<0 ) {
+					stack[++depth] = rootNode;
+				} else {
+					PathTrieNode node = stack[depth].getChild(reader.getLocalName());
+					if ( node==null ) {
+						XmlStreamReaderHelper.skipElement(reader);
+					} else if ( node.handler!=null ) {
+						node.handler.handle(reader);
+					} else {
+						stack[++depth] = node;
+					}
 				}
-			}
-			if ( filteredReader.getEventType()==XMLEvent.END_ELEMENT && stack.size()>0 && stack.lastElement().equals(filteredReader.getLocalName())) {
-				stack.pop();
+			} else if ( type==XMLEvent.END_ELEMENT ) {
+				depth--;
 			}
 		}
 	}
 
-	private static final XMLInputFactory _getXmlInputFactory() {
-		XMLInputFactory inputFactory = XMLInputFactory.newFactory();
-		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-		return XmlFactory.builder().disable(StreamReadFeature.AUTO_CLOSE_SOURCE).inputFactory(inputFactory).build()
-				.getXMLInputFactory();
+	/**
+	 * Node in the trie of registered paths; each node represents an element 
+	 * name, optionally with a handler for that element.
+	 */
+	private static final class PathTrieNode {
+		private final Map<String, PathTrieNode> children = new HashMap<>();
+		private XmlHandler handler;
+		
+		private PathTrieNode getChild(String localName) {
+			PathTrieNode child = children.get(localName);
+			if ( child==null ) {
+				// Parsers are not namespace-aware, so match prefixed names like 'ns2:Issue' on local name
+				int prefixEnd = localName.indexOf(':');
+				if ( prefixEnd>=0 ) { child = children.get(localName.substring(prefixEnd+1)); }
+			}
+			return child;
+		}
+		
+		private PathTrieNode getOrCreateChild(String localName) {
+			return children.computeIfAbsent(localName, k->new PathTrieNode());
+		}
+		
+		private int getHeight() {
+			int height = 0;
+			for ( PathTrieNode child : children.values() ) {
+				height = Math.max(height, child.getHeight()+1);
+			}
+			return height;
+		}
 	}
 }
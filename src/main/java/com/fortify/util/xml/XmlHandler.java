@@ -31,7 +31,9 @@ import javax.xml.stream.XMLStreamReader;
 
 /**
  * Functional interface for handling the XML element that the given
- * {@link XMLStreamReader} is pointing at.
+ * {@link XMLStreamReader} is pointing at. On return, the handler must
+ * have consumed the full element, leaving the {@link XMLStreamReader} 
+ * positioned at the corresponding END_ELEMENT.
  * 
  * @author Ruud Senden
  */
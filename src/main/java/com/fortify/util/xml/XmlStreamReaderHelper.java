@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.XMLEvent;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+
+/**
+ * Helper methods for working directly with an {@link XMLStreamReader}, 
+ * for example from within an {@link XmlHandler}.
+ */
+public class XmlStreamReaderHelper {
+	private static final XMLInputFactory XML_INPUT_FACTORY = _getXmlInputFactory();
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+	
+	/**
+	 * Get the default, non-namespace-aware {@link XMLInputFactory}
+	 */
+	public static final XMLInputFactory getDefaultXmlInputFactory() {
+		return XML_INPUT_FACTORY;
+	}
+	
+	/**
+	 * Skip the element that the given {@link XMLStreamReader} is currently
+	 * pointing at, including all of its children, without building any 
+	 * objects. On return, the reader will be positioned at the matching 
+	 * END_ELEMENT event, similar to Jackson's readValue() methods.
+	 */
+	public static final void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		if ( reader instanceof XMLStreamReader2 ) {
+			((XMLStreamReader2)reader).skipElement();
+		} else {
+			skipRemainingContent(reader);
+		}
+	}
+	
+	/**
+	 * Skip the remaining content of the element that the given {@link XMLStreamReader} 
+	 * is currently in, for example after having read some of its child elements. On 
+	 * return, the reader will be positioned at the END_ELEMENT event of that element. 
+	 */
+	public static final void skipRemainingContent(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while ( depth>0 && reader.hasNext() ) {
+			int type = reader.next();
+			if ( type==XMLEvent.START_ELEMENT ) {
+				depth++;
+			} else if ( type==XMLEvent.END_ELEMENT ) {
+				depth--;
+			}
+		}
+	}
+	
+	/**
+	 * Get the value of the given attribute as an {@link Integer}, or
+	 * null if the attribute is not present or blank.
+	 */
+	public static final Integer getIntegerAttribute(XMLStreamReader reader, String localName) {
+		String value = reader.getAttributeValue(null, localName);
+		return value==null || value.trim().isEmpty() ? null : Integer.valueOf(value.trim());
+	}
+	
+	/**
+	 * Read the text of the current element as a {@link Float}, or
+	 * null if the element is empty.
+	 */
+	public static final Float readFloat(XMLStreamReader reader) throws XMLStreamException {
+		String value = reader.getElementText();
+		return value.trim().isEmpty() ? null : Float.valueOf(value.trim());
+	}
+	
+	/**
+	 * Copy the element that the given {@link XMLStreamReader} is currently pointing 
+	 * at to a standalone XML fragment; attributes, text and child elements are copied, 
+	 * comments and processing instructions are ignored. On return, the reader will be 
+	 * positioned at the matching END_ELEMENT event. The returned fragment can be read 
+	 * using {@link #createXmlStreamReader(byte[])}.
+	 */
+	public static final byte[] copyElement(XMLStreamReader reader) throws XMLStreamException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
+		XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(outputStream, "UTF-8");
+		int depth = 0;
+		for ( int type = reader.getEventType() ; ; type = reader.next() ) {
+			switch ( type ) {
+			case XMLEvent.START_ELEMENT:
+				depth++;
+				writer.writeStartElement(reader.getLocalName());
+				for ( int i = 0 ; i < reader.getAttributeCount() ; i++ ) {
+					writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+				}
+				break;
+			case XMLEvent.END_ELEMENT:
+				depth--;
+				writer.writeEndElement();
+				break;
+			case XMLEvent.CHARACTERS: case XMLEvent.CDATA: case XMLEvent.SPACE:
+				writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			}
+			if ( depth==0 ) { break; }
+		}
+		writer.close();
+		return outputStream.toByteArray();
+	}
+	
+	/**
+	 * Create an {@link XMLStreamReader} for the given XML fragment, positioned
+	 * at the START_ELEMENT event of the fragment's root element. 
+	 */
+	public static final XMLStreamReader createXmlStreamReader(byte[] fragment) throws XMLStreamException {
+		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(fragment));
+		reader.nextTag();
+		return reader;
+	}
+	
+	private static final XMLInputFactory _getXmlInputFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return XmlFactory.builder().disable(StreamReadFeature.AUTO_CLOSE_SOURCE).inputFactory(inputFactory).build()
+				.getXMLInputFactory();
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+import com.fortify.fprtosonarqube.util.IssueSnapshot;
+
+public class DiffIssueDataSinkTest {
+	private static final String IID1 = "0123456789ABCDEF0123456789ABCDEF";
+	private static final String IID2 = "FEDCBA9876543210FEDCBA9876543210";
+	private static final String IID3 = "00000000000000000000000000000001";
+	private Path snapshotFile;
+	
+	@BeforeEach
+	public void createSnapshotFile() throws IOException {
+		snapshotFile = Files.createTempFile("DiffIssueDataSinkTest", ".snapshot");
+	}
+	
+	@AfterEach
+	public void deleteSnapshotFile() throws IOException {
+		Files.deleteIfExists(snapshotFile);
+	}
+	
+	@Test
+	public void testWithoutPreviousSnapshot() throws IOException {
+		CollectingSink result = convert(null, 
+				issue(IID1, "rule1", "file1", 1), 
+				issue("non-packable", "rule2", "file2", 2));
+		assertEquals(Arrays.asList(IID1, "non-packable"), result.instanceIds);
+		assertEquals(Arrays.asList("rule1", "rule2", "rule3"), result.ruleIds);
+		try ( IssueSnapshot snapshot = new IssueSnapshot(snapshotFile) ) {
+			assertEquals(1, snapshot.size());
+		}
+	}
+	
+	@Test
+	public void testWithPreviousSnapshot() throws IOException {
+		convert(null, 
+				issue(IID1, "rule1", "file1", 1), 
+				issue(IID2, "rule2", "file2", 2), 
+				issue("non-packable", "rule1", "file1", 3));
+		try ( IssueSnapshot previous = new IssueSnapshot(snapshotFile) ) {
+			SQIssue changed = issue(IID2, "rule2", "file2", 2);
+			changed.setSecondaryLocations(new Location[] {location("file3", 3)});
+			CollectingSink result = convert(previous, 
+					issue(IID1, "rule1", "file1", 1), 
+					changed, 
+					issue(IID3, "rule2", "file1", 4), 
+					issue("non-packable", "rule1", "file1", 3));
+			// Unchanged issues are filtered, changed, new and non-packable issues are passed
+			assertEquals(Arrays.asList(IID2, IID3, "non-packable"), result.instanceIds);
+			assertEquals(Arrays.asList("rule1", "rule2"), result.ruleIds);
+		}
+	}
+	
+	@Test
+	public void testRulesOnlyForPassedIssues() throws IOException {
+		convert(null, issue(IID1, "rule1", "file1", 1), issue(IID2, "rule2", "file2", 2));
+		try ( IssueSnapshot previous = new IssueSnapshot(snapshotFile) ) {
+			CollectingSink result = convert(previous, 
+					issue(IID1, "rule1", "file1", 1), 
+					issue(IID2, "rule2", "file2", 3));
+			assertEquals(Arrays.asList(IID2), result.instanceIds);
+			assertEquals(Arrays.asList("rule2"), result.ruleIds);
+		}
+	}
+	
+	@Test
+	public void testSourceBasePathChange() throws IOException {
+		convert(null, issue(IID1, "rule1", "file1", 1), issue(IID2, "rule2", "file2", 2));
+		try ( IssueSnapshot previous = new IssueSnapshot(snapshotFile) ) {
+			SQIssue moved = issue(IID1, "rule1", "file1", 1);
+			moved.getPrimaryLocation().setFilePath("/other/checkout/file1");
+			SQIssue changed = issue(IID2, "rule2", "file2", 2);
+			changed.getPrimaryLocation().setSourcePath("file3");
+			CollectingSink result = convert(previous, moved, changed);
+			assertEquals(Arrays.asList(IID2), result.instanceIds);
+		}
+	}
+	
+	/**
+	 * Pass the given issues and rules rule1, rule2 and rule3 through a {@link DiffIssueDataSink},
+	 * and write the resulting snapshot to the snapshot file.
+	 */
+	private CollectingSink convert(IssueSnapshot previous, SQIssue... issues) throws IOException {
+		CollectingSink result = new CollectingSink();
+		IssueSnapshot.Builder current = new IssueSnapshot.Builder();
+		DiffIssueDataSink sink = new DiffIssueDataSink(result, previous, current);
+		sink.startIssues();
+		for ( SQIssue issue : issues ) { sink.issue(issue); }
+		sink.endIssues();
+		sink.startRules();
+		for ( String ruleId : Arrays.asList("rule1", "rule2", "rule3") ) {
+			sink.rule(SQRule.builder().ruleId(ruleId).build());
+		}
+		sink.endRules();
+		current.write(snapshotFile);
+		return result;
+	}
+	
+	private static SQIssue issue(String instanceId, String ruleId, String filePath, int line) {
+		return SQIssue.builder()
+				.instanceId(instanceId)
+				.ruleId(ruleId)
+				.severity("MAJOR")
+				.type("VULNERABILITY")
+				.primaryLocation(location(filePath, line))
+				.build();
+	}
+	
+	private static Location location(String sourcePath, int line) {
+		return Location.builder()
+				.filePath("/checkout/"+sourcePath)
+				.sourcePath(sourcePath)
+				.textRange(TextRange.builder().startLine(line).endLine(line).build())
+				.build();
+	}
+	
+	private static final class CollectingSink implements IssueDataSink {
+		private final List<String> instanceIds = new ArrayList<>();
+		private final List<String> ruleIds = new ArrayList<>();
+		
+		@Override
+		public void issue(SQIssue issue) {
+			instanceIds.add(issue.getInstanceId());
+		}
+
+		@Override
+		public void rule(SQRule rule) {
+			ruleIds.add(rule.getRuleId());
+		}
+	}
+}
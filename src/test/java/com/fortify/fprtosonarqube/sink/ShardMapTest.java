@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ShardMapTest {
+	@Test
+	public void testRelativePrefixes() {
+		ShardMap shardMap = createShardMap("src/main", "main", "src/main/web/", "web", "Module", "module");
+		assertEquals("main", shardMap.getShard("/repo/src/main/A.java"));
+		assertEquals("main", shardMap.getShard("src/main/A.java"));
+		assertEquals("main", shardMap.getShard("/repo/src/main"));
+		assertEquals("web", shardMap.getShard("/repo/src/main/web/A.java"));
+		assertEquals("main", shardMap.getShard("/repo/src/main/webapp/A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("/repo/src/mainframe/A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("/repo/xsrc/main/A.java"));
+		// A non-matching occurrence must not prevent a later match
+		assertEquals("main", shardMap.getShard("/src/mainframe/src/main/A.java"));
+		assertEquals("module", shardMap.getShard("C:\\repo\\Module\\A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("C:\\repo\\Module2\\A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard(null));
+	}
+	
+	@Test
+	public void testAbsolutePrefixes() {
+		ShardMap shardMap = createShardMap("/repo/app", "app", "C:\\repo\\lib", "lib");
+		assertEquals("app", shardMap.getShard("/repo/app/A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("/repo/application/A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("/other/repo/app/A.java"));
+		assertEquals("lib", shardMap.getShard("C:\\repo\\lib\\A.java"));
+		assertEquals(ShardMap.DEFAULT_SHARD, shardMap.getShard("C:\\repo\\library\\A.java"));
+	}
+	
+	private static ShardMap createShardMap(String... prefixesAndShards) {
+		Map<String, String> prefixToShard = new LinkedHashMap<>();
+		for ( int i = 0 ; i < prefixesAndShards.length ; i+=2 ) {
+			prefixToShard.put(prefixesAndShards[i], prefixesAndShards[i+1]);
+		}
+		return new ShardMap(prefixToShard);
+	}
+}
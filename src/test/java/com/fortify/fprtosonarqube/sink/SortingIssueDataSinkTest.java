@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.Location;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQIssue.TextRange;
+import com.fortify.fprtosonarqube.domain.sonarqube.SQRule;
+
+public class SortingIssueDataSinkTest {
+	@Test
+	public void testInMemorySort() throws IOException {
+		List<SQIssue> sorted = sort(Long.MAX_VALUE, createIssues(new Random(42), 1000)).issues;
+		assertEquals(1000, sorted.size());
+		assertSorted(sorted);
+	}
+	
+	@Test
+	public void testSingleTierMerge() throws IOException {
+		List<SQIssue> issues = createIssues(new Random(42), 1000);
+		// Small budget, so every run file holds a few issues
+		assertEquals(sort(Long.MAX_VALUE, issues).issues, sort(4096, issues).issues);
+	}
+	
+	@Test
+	public void testMultiTierMerge() throws IOException {
+		// Every issue is spilled to its own run file; 63*64+63 issues leave 63 run files 
+		// on both the first and second tier, requiring an additional merge at the end
+		for ( int count : new int[] {4095, 5000} ) {
+			List<SQIssue> issues = createIssues(new Random(count), count);
+			CollectingSink expected = sort(Long.MAX_VALUE, issues, "rule2", "rule1");
+			CollectingSink actual = sort(0, issues, "rule2", "rule1");
+			assertEquals(count, actual.issues.size());
+			assertSorted(actual.issues);
+			assertEquals(expected.issues, actual.issues);
+			assertEquals(expected.ruleIds, actual.ruleIds);
+		}
+	}
+	
+	@Test
+	public void testSortedRules() throws IOException {
+		CollectingSink result = sort(0, createIssues(new Random(42), 10), "rule3", null, "rule1", "rule2");
+		assertEquals(Arrays.asList(null, "rule1", "rule2", "rule3"), result.ruleIds);
+	}
+	
+	@Test
+	public void testCloseDeletesRunFiles() throws IOException {
+		int runFileCount = countRunFiles();
+		try ( SortingIssueDataSink sink = new SortingIssueDataSink(new CollectingSink(), 0) ) {
+			sink.startIssues();
+			for ( SQIssue issue : createIssues(new Random(42), 100) ) { sink.issue(issue); }
+			assertTrue(countRunFiles()>runFileCount);
+		}
+		assertEquals(runFileCount, countRunFiles());
+	}
+	
+	/**
+	 * Pass the given issues and rules through a {@link SortingIssueDataSink} with the 
+	 * given memory budget, checking that no run files are left behind.
+	 */
+	private static CollectingSink sort(long memoryBudget, List<SQIssue> issues, String... ruleIds) throws IOException {
+		int runFileCount = countRunFiles();
+		CollectingSink result = new CollectingSink();
+		try ( SortingIssueDataSink sink = new SortingIssueDataSink(result, memoryBudget) ) {
+			sink.startIssues();
+			for ( SQIssue issue : issues ) { sink.issue(issue); }
+			sink.endIssues();
+			assertEquals(runFileCount, countRunFiles());
+			sink.startRules();
+			for ( String ruleId : ruleIds ) { sink.rule(SQRule.builder().ruleId(ruleId).build()); }
+			sink.endRules();
+		}
+		return result;
+	}
+	
+	/**
+	 * Create issues with many equal sort keys, including issues without file path,
+	 * text range or rule id
+	 */
+	private static List<SQIssue> createIssues(Random random, int count) {
+		List<SQIssue> result = new ArrayList<>();
+		for ( int i = 0 ; i < count ; i++ ) {
+			int fileIndex = random.nextInt(20);
+			Integer line = random.nextInt(10)==0 ? null : random.nextInt(50);
+			int ruleIndex = random.nextInt(5);
+			result.add(SQIssue.builder()
+				.instanceId(String.format("%032X", i))
+				.engineId("fortify")
+				.ruleId(ruleIndex==0 ? null : "rule"+ruleIndex)
+				.severity("MAJOR")
+				.type("VULNERABILITY")
+				.primaryLocation(Location.builder()
+					.filePath(fileIndex==0 ? null : "src/file"+fileIndex+".java")
+					.message("Message "+random.nextInt(3))
+					.textRange(line==null ? null : TextRange.builder().startLine(line).endLine(line).build())
+					.build())
+				.build());
+		}
+		return result;
+	}
+	
+	private static void assertSorted(List<SQIssue> issues) {
+		for ( int i = 1 ; i < issues.size() ; i++ ) {
+			SQIssue previous = issues.get(i-1);
+			SQIssue current = issues.get(i);
+			int cmp = compare(getFilePath(previous), getFilePath(current));
+			if ( cmp==0 ) { cmp = Integer.compare(getStartLine(previous), getStartLine(current)); }
+			if ( cmp==0 ) { cmp = compare(previous.getRuleId(), current.getRuleId()); }
+			assertTrue(cmp<=0, "Issues "+(i-1)+" and "+i+" are not sorted");
+		}
+	}
+	
+	private static int compare(String s1, String s2) {
+		if ( s1==null || s2==null ) { return s1==null ? (s2==null ? 0 : -1) : 1; }
+		return s1.compareTo(s2);
+	}
+	
+	private static String getFilePath(SQIssue issue) {
+		return issue.getPrimaryLocation().getFilePath();
+	}
+	
+	private static int getStartLine(SQIssue issue) {
+		TextRange textRange = issue.getPrimaryLocation().getTextRange();
+		return textRange==null ? -1 : textRange.getStartLine();
+	}
+	
+	private static int countRunFiles() {
+		File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name)->name.startsWith("FortifyIssueSort"));
+		return files==null ? 0 : files.length;
+	}
+	
+	private static final class CollectingSink implements IssueDataSink {
+		private final List<SQIssue> issues = new ArrayList<>();
+		private final List<String> ruleIds = new ArrayList<>();
+		
+		@Override
+		public void issue(SQIssue issue) {
+			issues.add(issue);
+		}
+
+		@Override
+		public void rule(SQRule rule) {
+			ruleIds.add(rule.getRuleId());
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class IidFolderMapCacheTest {
+	private static final String IID1 = "0123456789ABCDEF0123456789ABCDEF";
+	private static final String IID2 = "FEDCBA9876543210FEDCBA9876543210";
+	private Path dir;
+	private IidFolderMapCache cache;
+	
+	@BeforeEach
+	public void createCache() throws IOException {
+		dir = Files.createTempDirectory("IidFolderMapCacheTest");
+		cache = new IidFolderMapCache(dir, Long.MAX_VALUE, false);
+	}
+	
+	@AfterEach
+	public void deleteDir() throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for ( Path file : stream ) { Files.delete(file); }
+		}
+		Files.delete(dir);
+	}
+	
+	@Test
+	public void testPutAndGet() throws IOException {
+		assertNull(cache.get("key"));
+		Map<String, String> map = createMap();
+		cache.put("key", map);
+		assertEquals(map, cache.get("key"));
+	}
+	
+	@Test
+	public void testTruncatedEntry() throws IOException {
+		cache.put("key", createMap());
+		Path file = dir.resolve("key.iidmap");
+		byte[] contents = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(contents, contents.length-10));
+		assertNull(cache.get("key"));
+		assertFalse(Files.exists(file));
+	}
+	
+	@Test
+	public void testCorruptEntry() throws IOException {
+		Path file = Files.write(dir.resolve("key.iidmap"), new byte[] {0, 0, 0, 1, 0, 1, 'X', (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF});
+		assertNull(cache.get("key"));
+		assertFalse(Files.exists(file));
+	}
+	
+	private static Map<String, String> createMap() {
+		Map<String, String> result = new HashMap<>();
+		result.put(IID1, "Critical");
+		result.put(IID2, "Low");
+		result.put("non-packable", "High");
+		return result;
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IidFolderMapTest {
+	private static final String IID1 = "0123456789ABCDEF0123456789ABCDEF";
+	private static final String IID2 = "FEDCBA9876543210FEDCBA9876543210";
+	
+	@Test
+	public void testPutAndGetOnHeap() {
+		testPutAndGet(false);
+	}
+	
+	@Test
+	public void testPutAndGetOffHeap() {
+		testPutAndGet(true);
+	}
+	
+	@Test
+	public void testNonPackableIds() {
+		IidFolderMap map = new IidFolderMap(false);
+		String lowerCase = IID1.toLowerCase();
+		String tooShort = IID1.substring(1);
+		String notHex = "GHIJKLMNOPQRSTUVWXYZ0123456789AB";
+		map.put(lowerCase, "High");
+		map.put(tooShort, "Low");
+		map.put(notHex, "Low");
+		map.put(IID1, "Critical");
+		assertEquals(4, map.size());
+		assertEquals("High", map.get(lowerCase));
+		assertEquals("Low", map.get(tooShort));
+		assertEquals("Low", map.get(notHex));
+		assertEquals("Critical", map.get(IID1));
+		assertNull(map.get(IID1.substring(2)));
+		assertNull(map.get(null));
+		assertNull(map.get(1));
+		assertEquals("High", map.put(lowerCase, "Medium"));
+		assertEquals("Medium", map.get(lowerCase));
+		assertEquals(4, map.size());
+	}
+	
+	@Test
+	public void testOverwrite() {
+		IidFolderMap map = new IidFolderMap(false);
+		assertNull(map.put(IID1, "High"));
+		assertEquals("High", map.put(IID1, "Low"));
+		assertEquals("Low", map.get(IID1));
+		assertEquals(1, map.size());
+		assertThrows(NullPointerException.class, ()->map.put(IID2, null));
+	}
+	
+	@Test
+	public void testMoreFoldersThanOrdinals() {
+		IidFolderMap map = new IidFolderMap(false);
+		Map<String, String> expected = new HashMap<>();
+		for ( int i = 0 ; i < 300 ; i++ ) {
+			String iid = String.format("%032X", i);
+			map.put(iid, "Folder"+i);
+			expected.put(iid, "Folder"+i);
+		}
+		assertEquals(expected, map);
+		assertEquals(expected, new HashMap<>(map));
+		
+		// Move random entries between the hash table and the fallback map
+		Random random = new Random(42);
+		IidFolderMap randomMap = createRandomMap(random, false, 5000, expected);
+		for ( int i = 0 ; i < 300 ; i++ ) { 
+			randomMap.put(String.format("%032X", i), "Folder"+i);
+		}
+		String[] iids = expected.keySet().toArray(new String[0]);
+		for ( int i = 0 ; i < 20000 ; i++ ) {
+			String iid = iids[random.nextInt(iids.length)];
+			String folder = "Folder"+random.nextInt(300);
+			assertEquals(expected.put(iid, folder), randomMap.put(iid, folder));
+		}
+		assertEquals(expected.size(), randomMap.size());
+		assertEquals(expected, randomMap);
+		assertEquals(expected, new HashMap<>(randomMap));
+	}
+	
+	@Test
+	public void testWriteAndRead() throws IOException {
+		IidFolderMap map = createRandomMap(new Random(42), false, 5000, new HashMap<>());
+		map.put("non-packable", "Low");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+			map.writeTo(out);
+		}
+		for ( boolean offHeap : new boolean[] {false, true} ) {
+			IidFolderMap read = IidFolderMap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), offHeap);
+			assertEquals(map.size(), read.size());
+			assertEquals(map, read);
+			// Read maps must remain writable
+			read.put(IID1, "Critical");
+			assertEquals("Critical", read.get(IID1));
+		}
+	}
+	
+	private void testPutAndGet(boolean offHeap) {
+		Random random = new Random(42);
+		Map<String, String> expected = new HashMap<>();
+		// Exceeds the initial capacity, so the table is resized several times
+		IidFolderMap map = createRandomMap(random, offHeap, 20000, expected);
+		assertEquals(expected.size(), map.size());
+		for ( Map.Entry<String, String> entry : expected.entrySet() ) {
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+			assertTrue(map.containsKey(entry.getKey()));
+		}
+		for ( int i = 0 ; i < 1000 ; i++ ) {
+			String iid = String.format("%016X%016X", random.nextLong(), random.nextLong());
+			assertEquals(expected.get(iid), map.get(iid));
+		}
+		assertFalse(map.containsKey(IID1));
+		assertEquals(expected, new HashMap<>(map));
+	}
+	
+	private static IidFolderMap createRandomMap(Random random, boolean offHeap, int size, Map<String, String> expected) {
+		String[] folders = {"Critical", "High", "Medium", "Low"};
+		IidFolderMap map = new IidFolderMap(offHeap);
+		for ( int i = 0 ; i < size ; i++ ) {
+			String iid = String.format("%016X%016X", random.nextLong(), random.nextLong());
+			String folder = folders[random.nextInt(folders.length)];
+			map.put(iid, folder);
+			expected.put(iid, folder);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class IssueSnapshotTest {
+	private static final String IID1 = "0123456789ABCDEF0123456789ABCDEF";
+	private static final String IID2 = "FEDCBA9876543210FEDCBA9876543210";
+	private static final String IID3 = "00000000000000000000000000000001";
+	private Path dir;
+	private final List<IssueSnapshot> snapshots = new ArrayList<>();
+	
+	@BeforeEach
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("IssueSnapshotTest");
+	}
+	
+	@AfterEach
+	public void deleteDir() throws IOException {
+		for ( IssueSnapshot snapshot : snapshots ) { snapshot.close(); }
+		for ( Path file : listFiles() ) { Files.delete(file); }
+		Files.delete(dir);
+	}
+	
+	@Test
+	public void testEmptySnapshot() throws IOException {
+		IssueSnapshot empty = write("empty", new IssueSnapshot.Builder());
+		assertEquals(0, empty.size());
+		assertFalse(empty.contains(IID1, 0));
+		assertEquals(Collections.emptyList(), findRemoved(empty, empty));
+		
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		builder.add(IID1, 1);
+		builder.add(IID2, 2);
+		IssueSnapshot full = write("full", builder);
+		assertEquals(Collections.emptyList(), findRemoved(empty, full));
+		assertEquals(Arrays.asList(IID1, IID2), findRemoved(full, empty));
+	}
+	
+	@Test
+	public void testContains() throws IOException {
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		builder.add(IID2, 2);
+		builder.add(IID1, 1);
+		IssueSnapshot snapshot = write("snapshot", builder);
+		assertEquals(2, snapshot.size());
+		assertTrue(snapshot.contains(IID1, 1));
+		assertTrue(snapshot.contains(IID2, 2));
+		assertFalse(snapshot.contains(IID1, 2));
+		assertFalse(snapshot.contains(IID3, 1));
+	}
+	
+	@Test
+	public void testNonPackableIds() throws IOException {
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		builder.add(IID1.toLowerCase(), 1);
+		builder.add(IID1.substring(1), 1);
+		builder.add("GHIJKLMNOPQRSTUVWXYZ0123456789AB", 1);
+		builder.add(null, 1);
+		builder.add(IID1, 1);
+		IssueSnapshot snapshot = write("snapshot", builder);
+		assertEquals(1, snapshot.size());
+		assertTrue(snapshot.contains(IID1, 1));
+		assertFalse(snapshot.contains(IID1.toLowerCase(), 1));
+		assertFalse(snapshot.contains(IID1.substring(1), 1));
+		assertFalse(snapshot.contains(null, 1));
+	}
+	
+	@Test
+	public void testDuplicateIds() throws IOException {
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		for ( int i = 0 ; i < 100 ; i++ ) {
+			builder.add(IID1, i);
+			builder.add(IID3, i);
+		}
+		builder.add(IID2, 1);
+		IssueSnapshot previous = write("previous", builder);
+		assertEquals(201, previous.size());
+		for ( int i = 0 ; i < 100 ; i++ ) {
+			assertTrue(previous.contains(IID1, i));
+			assertTrue(previous.contains(IID3, i));
+		}
+		assertFalse(previous.contains(IID1, 100));
+		
+		IssueSnapshot.Builder currentBuilder = new IssueSnapshot.Builder();
+		currentBuilder.add(IID3, 0);
+		IssueSnapshot current = write("current", currentBuilder);
+		assertEquals(Arrays.asList(IID1, IID2), findRemoved(previous, current));
+		assertEquals(Collections.emptyList(), findRemoved(current, previous));
+	}
+	
+	@Test
+	public void testSortAndFindRemoved() throws IOException {
+		Random random = new Random(42);
+		Map<String, Long> previousHashes = new HashMap<>();
+		Map<String, Long> currentHashes = new HashMap<>();
+		List<String> expectedRemoved = new ArrayList<>();
+		IssueSnapshot.Builder previousBuilder = new IssueSnapshot.Builder();
+		IssueSnapshot.Builder currentBuilder = new IssueSnapshot.Builder();
+		// Exceeds the initial builder capacity, and covers both signs of the packed longs
+		for ( int i = 0 ; i < 10000 ; i++ ) {
+			String iid = String.format("%016X%016X", random.nextLong(), random.nextLong());
+			long hash = random.nextLong();
+			previousHashes.put(iid, hash);
+			previousBuilder.add(iid, hash);
+			if ( random.nextInt(4)==0 ) {
+				expectedRemoved.add(iid);
+			} else {
+				currentHashes.put(iid, hash);
+				currentBuilder.add(iid, hash);
+			}
+		}
+		IssueSnapshot previous = write("previous", previousBuilder);
+		IssueSnapshot current = write("current", currentBuilder);
+		assertEquals(previousHashes.size(), previous.size());
+		assertEquals(currentHashes.size(), current.size());
+		for ( Map.Entry<String, Long> entry : previousHashes.entrySet() ) {
+			assertTrue(previous.contains(entry.getKey(), entry.getValue()));
+			assertFalse(previous.contains(entry.getKey(), entry.getValue()+1));
+			assertEquals(currentHashes.containsKey(entry.getKey()), current.contains(entry.getKey(), entry.getValue()));
+		}
+		
+		List<String> removed = findRemoved(previous, current);
+		Collections.sort(expectedRemoved);
+		// Upper-case hex strings of equal length sort like the unsigned packed longs
+		assertEquals(expectedRemoved, removed);
+		assertEquals(Collections.emptyList(), findRemoved(current, previous));
+	}
+	
+	@Test
+	public void testReplaceExistingFile() throws IOException {
+		IssueSnapshot.Builder builder = new IssueSnapshot.Builder();
+		builder.add(IID1, 1);
+		write("snapshot", builder).close();
+		snapshots.clear();
+		builder.add(IID2, 2);
+		IssueSnapshot snapshot = write("snapshot", builder);
+		assertEquals(2, snapshot.size());
+		assertEquals(Arrays.asList(dir.resolve("snapshot")), listFiles());
+	}
+	
+	@Test
+	public void testInvalidFile() throws IOException {
+		Path file = Files.write(dir.resolve("invalid"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+		assertThrows(IOException.class, ()->new IssueSnapshot(file).close());
+	}
+	
+	private IssueSnapshot write(String name, IssueSnapshot.Builder builder) throws IOException {
+		Path file = dir.resolve(name);
+		builder.write(file);
+		IssueSnapshot result = new IssueSnapshot(file);
+		snapshots.add(result);
+		return result;
+	}
+	
+	private List<Path> listFiles() throws IOException {
+		try ( Stream<Path> files = Files.list(dir) ) {
+			return files.collect(Collectors.toList());
+		}
+	}
+	
+	private static List<String> findRemoved(IssueSnapshot previous, IssueSnapshot current) throws IOException {
+		List<String> result = new ArrayList<>();
+		previous.findRemoved(current, result::add);
+		return result;
+	}
+}
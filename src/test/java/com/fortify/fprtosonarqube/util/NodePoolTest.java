@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.fprtosonarqube.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fortify.fprtosonarqube.domain.fvdl.FvdlVulnerability.SourceLocation;
+
+public class NodePoolTest {
+	@Test
+	public void testReferences() {
+		NodePool pool = new NodePool(false, Long.MAX_VALUE);
+		for ( int i = 0 ; i < 10000 ; i+=3 ) {
+			pool.addReference(String.valueOf(i));
+		}
+		pool.addReference("node-1");
+		pool.addReference("999999999");
+		for ( int i = 0 ; i < 10000 ; i++ ) {
+			assertEquals(i%3==0, pool.isReferenced(String.valueOf(i)), "Node "+i);
+		}
+		assertTrue(pool.isReferenced("node-1"));
+		assertTrue(pool.isReferenced("999999999"));
+		assertFalse(pool.isReferenced("node-2"));
+		assertFalse(pool.isReferenced(null));
+		pool.clearReferences();
+		assertFalse(pool.isReferenced("0"));
+		assertFalse(pool.isReferenced("node-1"));
+	}
+	
+	@Test
+	public void testAddAndGetWithSpilling() throws IOException {
+		try (NodePool pool = new NodePool(false, 0)) {
+			for ( int i = 0 ; i < 100000 ; i++ ) {
+				pool.add(String.valueOf(i), new SourceLocation("file"+(i%10)+".java", i, i+1, null, 5));
+			}
+			pool.add("node-1", new SourceLocation(null, 1, null, null, null));
+			assertEquals(100001, pool.size());
+			SourceLocation location = pool.get("12345");
+			assertEquals("file5.java", location.getPath());
+			assertEquals(Integer.valueOf(12345), location.getLine());
+			assertEquals(Integer.valueOf(12346), location.getLineEnd());
+			assertNull(location.getColStart());
+			assertEquals(Integer.valueOf(5), location.getColEnd());
+			assertNull(pool.get("node-1").getPath());
+			assertNull(pool.get("100001"));
+		}
+	}
+}